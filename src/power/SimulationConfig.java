@@ -0,0 +1,193 @@
+package power;
+
+import org.w3c.dom.Node;
+
+import power.helpers.XmlTools;
+
+/**
+ * The parameters of a single run, resolved once when the scenario is built.
+ * The components keep a reference to the configuration instead of looking
+ * the parameters up on every use.
+ *
+ * Every parameter may be given as an attribute of the SimulationConfig node of
+ * the scenario, e.g. &lt;SimulationConfig period="24" canTrade="true"/&gt;, in
+ * which case it takes precedence over the run parameters. A parameter given by
+ * neither is an error.
+ */
+public final class SimulationConfig {
+
+	public enum XmlNode {
+		SimulationConfig
+	}
+
+	private enum XmlAttribute {
+		period,
+		windowSize,
+		canTrade,
+		canSuspendLoad,
+		hourlyGridBuyBack,
+		historyValue,
+		simulateReliability,
+		pauseOnBlackout,
+		forceDumping,
+		minDegree,
+		maxDegree,
+		maxNumberOfRounds,
+		isConnected,
+		indexedNetwork
+	}
+
+	private final int period;
+	private final int windowSize;
+	private final boolean canTrade;
+	private final boolean canSuspendLoad;
+	private final double hourlyGridBuyBack;
+	private final double historyValue;
+	private final boolean simulateReliability;
+	private final boolean pauseOnBlackout;
+	private final boolean forceDumping;
+	private final int minDegree;
+	private final int maxDegree;
+	private final int maxNumberOfRounds;
+	private final boolean isConnected;
+	private final boolean indexedNetwork;
+
+	/**
+	 * @param xml
+	 *            the SimulationConfig node of the scenario or null
+	 */
+	public static SimulationConfig create(Node xml) {
+		int period = (Integer) getValue(xml, XmlAttribute.period, Integer.class);
+		int windowSize = (Integer) getValue(xml, XmlAttribute.windowSize, Integer.class);
+		boolean canTrade = (Boolean) getValue(xml, XmlAttribute.canTrade, Boolean.class);
+		boolean canSuspendLoad = (Boolean) getValue(xml, XmlAttribute.canSuspendLoad, Boolean.class);
+		double hourlyGridBuyBack = (Double) getValue(xml, XmlAttribute.hourlyGridBuyBack, Double.class);
+		double historyValue = (Double) getValue(xml, XmlAttribute.historyValue, Double.class);
+		boolean simulateReliability = (Boolean) getValue(xml, XmlAttribute.simulateReliability, Boolean.class);
+		boolean pauseOnBlackout = (Boolean) getValue(xml, XmlAttribute.pauseOnBlackout, Boolean.class);
+		boolean forceDumping = (Boolean) getValue(xml, XmlAttribute.forceDumping, Boolean.class);
+		int minDegree = (Integer) getValue(xml, XmlAttribute.minDegree, Integer.class);
+		int maxDegree = (Integer) getValue(xml, XmlAttribute.maxDegree, Integer.class);
+		int maxNumberOfRounds = (Integer) getValue(xml, XmlAttribute.maxNumberOfRounds, Integer.class);
+		boolean isConnected = (Boolean) getValue(xml, XmlAttribute.isConnected, Boolean.class);
+		boolean indexedNetwork = (Boolean) getValue(xml, XmlAttribute.indexedNetwork, Boolean.class);
+
+		return new SimulationConfig(period, windowSize, canTrade, canSuspendLoad, hourlyGridBuyBack, historyValue, simulateReliability, pauseOnBlackout, forceDumping,
+				minDegree, maxDegree, maxNumberOfRounds, isConnected, indexedNetwork);
+	}
+
+	private static Object getValue(Node xml, XmlAttribute attribute, Class<?> type) {
+		String text = XmlTools.getAttributeValue(xml, attribute);
+		if (text == null) {
+			Object value = SmartGridBuilder.getParameter(attribute.toString());
+			if (value == null) {
+				System.err.println("The parameter " + attribute + " is neither a run parameter nor set by the scenario.");
+				(new Exception()).printStackTrace();
+				System.exit(1);
+			} else if (!(value instanceof String)) {
+				return value;
+			}
+			// a run parameter whose type was not declared, e.g. one given on
+			// the command line of a headless run without parameters.xml
+			text = (String) value;
+		}
+		if (type == Integer.class) {
+			return Integer.parseInt(text);
+		} else if (type == Double.class) {
+			return Double.parseDouble(text);
+		} else {
+			return Boolean.parseBoolean(text);
+		}
+	}
+
+	public SimulationConfig(int period,
+			int windowSize,
+			boolean canTrade,
+			boolean canSuspendLoad,
+			double hourlyGridBuyBack,
+			double historyValue,
+			boolean simulateReliability,
+			boolean pauseOnBlackout,
+			boolean forceDumping,
+			int minDegree,
+			int maxDegree,
+			int maxNumberOfRounds,
+			boolean isConnected,
+			boolean indexedNetwork) {
+		this.period = period;
+		this.windowSize = windowSize;
+		this.canTrade = canTrade;
+		this.canSuspendLoad = canSuspendLoad;
+		this.hourlyGridBuyBack = hourlyGridBuyBack;
+		this.historyValue = historyValue;
+		this.simulateReliability = simulateReliability;
+		this.pauseOnBlackout = pauseOnBlackout;
+		this.forceDumping = forceDumping;
+		this.minDegree = minDegree;
+		this.maxDegree = maxDegree;
+		this.maxNumberOfRounds = maxNumberOfRounds;
+		this.isConnected = isConnected;
+		this.indexedNetwork = indexedNetwork;
+	}
+
+	public int getPeriod() {
+		return period;
+	}
+
+	public int getWindowSize() {
+		return windowSize;
+	}
+
+	public boolean getCanTrade() {
+		return canTrade;
+	}
+
+	public boolean getCanSuspendLoad() {
+		return canSuspendLoad;
+	}
+
+	public double getHourlyGridBuyBack() {
+		return hourlyGridBuyBack;
+	}
+
+	public double getHistoryValue() {
+		return historyValue;
+	}
+
+	public boolean getSimulateReliability() {
+		return simulateReliability;
+	}
+
+	public boolean getPauseOnBlackout() {
+		return pauseOnBlackout;
+	}
+
+	public boolean getForceDumping() {
+		return forceDumping;
+	}
+
+	public int getMinDegree() {
+		return minDegree;
+	}
+
+	public int getMaxDegree() {
+		return maxDegree;
+	}
+
+	public int getMaxNumberOfRounds() {
+		return maxNumberOfRounds;
+	}
+
+	public boolean getIsConnected() {
+		return isConnected;
+	}
+
+	public boolean getIndexedNetwork() {
+		return indexedNetwork;
+	}
+
+	@Override
+	public String toString() {
+		return "SimulationConfig: {period: " + period + ", windowSize: " + windowSize + ", canTrade: " + canTrade + ", canSuspendLoad: " + canSuspendLoad + ", hourlyGridBuyBack: " + hourlyGridBuyBack + ", historyValue: " + historyValue + ", simulateReliability: " + simulateReliability + ", pauseOnBlackout: " + pauseOnBlackout + ", forceDumping: " + forceDumping + ", minDegree: " + minDegree + ", maxDegree: " + maxDegree + ", maxNumberOfRounds: " + maxNumberOfRounds + ", isConnected: " + isConnected + ", indexedNetwork: " + indexedNetwork + "}";
+	}
+}
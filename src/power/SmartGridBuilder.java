@@ -17,9 +17,15 @@ import power.auction.Auctioneer;
 import power.auction.Market;
 import power.components.Agent;
 import power.components.Grid;
+import power.components.OutageEngine;
 import power.components.PowerPlant;
+import power.components.ReliabilityClock;
+import power.components.StorageBank;
 import power.components.generators.AgentGenerator;
+import power.engine.HeadlessEngine;
 import power.helpers.XmlTools;
+import power.models.TickEpoch;
+import power.networks.AdjacencySnapshot;
 import power.networks.MinMaxNetworkGenerator;
 
 import repast.simphony.context.Context;
@@ -27,7 +33,8 @@ import repast.simphony.context.space.graph.NetworkBuilder;
 import repast.simphony.context.space.graph.NetworkGenerator;
 import repast.simphony.dataLoader.ContextBuilder;
 import repast.simphony.engine.environment.RunEnvironment;
-import repast.simphony.parameter.Parameters;
+import repast.simphony.engine.schedule.ScheduleParameters;
+import repast.simphony.essentials.RepastEssentials;
 import repast.simphony.space.graph.Network;
 
 public class SmartGridBuilder implements ContextBuilder<Object> {
@@ -39,17 +46,19 @@ public class SmartGridBuilder implements ContextBuilder<Object> {
 	
 	private static Context<Object> context;
 	private static Network<Object> network;
+	private static volatile AdjacencySnapshot adjacency;
+	private static volatile boolean isAdjacencyStale;
+	private static OutageEngine outages;
+	private static ReliabilityClock reliabilityClock;
+	private static TickEpoch tickEpoch;
+	private static StorageBank storageBank;
 	private static Grid grid;
 	private static HashMap<String, AgentGenerator> agentGeneratorMap;
+	private static SimulationConfig config;
 
 	// parameters
 	private String fileName;
 	
-	private int minDegree;
-	private int maxDegree;
-	private int maxNumberOfRounds;
-	private boolean isConnected;
-	
 	@Override
 	public Context<Object> build(Context<Object> context) {
 		System.out.println();
@@ -87,6 +96,10 @@ public class SmartGridBuilder implements ContextBuilder<Object> {
 			System.exit(1);
 		}
 		
+		SmartGridBuilder.config = SimulationConfig.create(XmlTools.getUptoOneNode(root, SimulationConfig.XmlNode.SimulationConfig));
+		SmartGridBuilder.reliabilityClock = new ReliabilityClock();
+		SmartGridBuilder.tickEpoch = new TickEpoch();
+		SmartGridBuilder.storageBank = new StorageBank();
 		SmartGridBuilder.grid = Grid.create(XmlTools.getExactlyOneNode(root, XmlNode.GridModel));
 				
 		ArrayList<Node> nodeList = XmlTools.getAtLeastOneNode(root, XmlNode.AgentGenerator);
@@ -110,19 +123,52 @@ public class SmartGridBuilder implements ContextBuilder<Object> {
 	}
 	
 	private void readParamaters() {
-		Parameters params = RunEnvironment.getInstance().getParameters();
-		fileName = (String) params.getValue("fileName");
-		minDegree = (Integer) params.getValue("minDegree");
-		maxDegree = (Integer) params.getValue("maxDegree");
-		maxNumberOfRounds = (Integer) params.getValue("maxNumberOfRounds");
-		isConnected = (Boolean) params.getValue("isConnected");
+		fileName = (String) getParameter("fileName");
 	}
 	
 	private void generateNetwork() {
 		NetworkBuilder<Object> networkBuilder = new NetworkBuilder<Object>("Smart Grid Network", getContext(), true);
-		NetworkGenerator<Object> networkGenerator = new MinMaxNetworkGenerator<Object>(minDegree, maxDegree, maxNumberOfRounds, isConnected);
+		NetworkGenerator<Object> networkGenerator = new MinMaxNetworkGenerator<Object>(config.getMinDegree(), config.getMaxDegree(), config.getMaxNumberOfRounds(), config.getIsConnected(), config.getIndexedNetwork());
 		networkBuilder.setGenerator(networkGenerator);
 		SmartGridBuilder.network = networkBuilder.buildNetwork();
+		SmartGridBuilder.adjacency = AdjacencySnapshot.create(network);
+		SmartGridBuilder.isAdjacencyStale = false;
+		SmartGridBuilder.outages = new OutageEngine();
+	}
+
+	/*
+	 * Engine access: the Repast runtime or, when running without it, the
+	 * HeadlessEngine
+	 */
+	public static double getTickCount() {
+		if (HeadlessEngine.isActive()) {
+			return HeadlessEngine.getInstance().getTickCount();
+		} else {
+			return RepastEssentials.GetTickCount();
+		}
+	}
+
+	public static void scheduleRepeating(Object target, String methodName, double priority) {
+		if (HeadlessEngine.isActive()) {
+			HeadlessEngine.getInstance().schedule(target, methodName, priority);
+		} else {
+			ScheduleParameters scheduleParams = ScheduleParameters.createRepeating(0, 1, priority);
+			RunEnvironment.getInstance().getCurrentSchedule().schedule(scheduleParams, target, methodName);
+		}
+	}
+
+	public static void pauseRun() {
+		if (!HeadlessEngine.isActive()) {
+			RunEnvironment.getInstance().pauseRun();
+		}
+	}
+
+	static Object getParameter(String name) {
+		if (HeadlessEngine.isActive()) {
+			return HeadlessEngine.getInstance().getParameter(name);
+		} else {
+			return RunEnvironment.getInstance().getParameters().getValue(name);
+		}
 	}
 
 	/*
@@ -136,6 +182,52 @@ public class SmartGridBuilder implements ContextBuilder<Object> {
 		return network;
 	}
 	
+	/**
+	 * @return the neighbors of the agents as of the last change to the
+	 *         network's topology
+	 */
+	public static AdjacencySnapshot getAdjacency() {
+		if (isAdjacencyStale) {
+			synchronized (SmartGridBuilder.class) {
+				if (isAdjacencyStale) {
+					adjacency = AdjacencySnapshot.create(network, adjacency);
+					isAdjacencyStale = false;
+				}
+			}
+		}
+		return adjacency;
+	}
+
+	/**
+	 * Has the snapshot of the neighbors rebuilt when it is next used, after
+	 * agents or edges were added to or removed from the network for good. The
+	 * agents keep their indices.
+	 */
+	public static void invalidateAdjacency() {
+		if (network != null) {
+			isAdjacencyStale = true;
+		}
+	}
+	
+	/**
+	 * @return which agents are cut off from the grid by blackouts
+	 */
+	public static OutageEngine getOutages() {
+		return outages;
+	}
+	
+	public static ReliabilityClock getReliabilityClock() {
+		return reliabilityClock;
+	}
+
+	public static TickEpoch getTickEpoch() {
+		return tickEpoch;
+	}
+
+	public static StorageBank getStorageBank() {
+		return storageBank;
+	}
+
 	public static HashMap<String, AgentGenerator> getAgentGeneratorMap() {
 		return agentGeneratorMap;
 	}
@@ -151,41 +243,45 @@ public class SmartGridBuilder implements ContextBuilder<Object> {
 	public static Grid getGrid() {
 		return grid;
 	}
+
+	public static SimulationConfig getConfig() {
+		return config;
+	}
 	
 	public static int getPeriod() {
-		return (Integer) RunEnvironment.getInstance().getParameters().getValue("period");
+		return config.getPeriod();
 	}
 	
 	public static int getWindowSize() {
-		return (Integer) RunEnvironment.getInstance().getParameters().getValue("windowSize");
+		return config.getWindowSize();
 	}
 
 	public static boolean getCanTrade() {
-		return (Boolean) RunEnvironment.getInstance().getParameters().getValue("canTrade");
+		return config.getCanTrade();
 	}
 	
 	public static boolean getCanSuspendLoad() {
-		return (Boolean) RunEnvironment.getInstance().getParameters().getValue("canSuspendLoad");
+		return config.getCanSuspendLoad();
 	}
 	
 	public static double getHourlyGridBuyBack() {
-		return (Double) RunEnvironment.getInstance().getParameters().getValue("hourlyGridBuyBack");
+		return config.getHourlyGridBuyBack();
 	}
 
 	public static double getHistoryValue() {
-		return (Double) RunEnvironment.getInstance().getParameters().getValue("historyValue");
+		return config.getHistoryValue();
 	}
 
 	public static boolean getSimulateReliability() {
-		return (Boolean) RunEnvironment.getInstance().getParameters().getValue("simulateReliability");
+		return config.getSimulateReliability();
 	}
 	
 	public static boolean getPauseOnBlackout() {
-		return (Boolean) RunEnvironment.getInstance().getParameters().getValue("pauseOnBlackout");
+		return config.getPauseOnBlackout();
 	}
 	
 	public static boolean getForceDumping() {
-		return (Boolean) RunEnvironment.getInstance().getParameters().getValue("forceDumping");
+		return config.getForceDumping();
 	}
 
 	private static double simulationConstant;
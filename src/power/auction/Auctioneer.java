@@ -1,9 +1,12 @@
 package power.auction;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 import org.w3c.dom.Node;
 
+import power.SimulationConfig;
+import power.SmartGridBuilder;
 import power.components.Grid;
 import power.components.IReliability;
 import power.components.IPowerPlant;
@@ -12,6 +15,9 @@ import power.components.Reliability;
 import power.distributions.IRandomDistribution;
 import power.distributions.RandomDistribution;
 import power.helpers.XmlTools;
+import power.tools.PolicyStore;
+import power.tools.QTable;
+import repast.simphony.engine.schedule.ScheduleParameters;
 import repast.simphony.engine.schedule.ScheduledMethod;
 
 public class Auctioneer extends Grid {
@@ -26,18 +32,46 @@ public class Auctioneer extends Grid {
 		Lambda,
 		ScaleUpFactor,
 		StopLock,
-		ScaleDownFactor
+		ScaleDownFactor,
+		Clearing,
+		DayAhead,
+		PolicyStore,
+		PolicyCheckpoint
 	};
 
+	private enum ClearingType {
+		Iterative, // default
+		MeritOrder,
+		Bracketed
+	}
+
 	private ArrayList<PowerPlant> powerPlantList;
-	private final double accuracy;
-	private final double epsilon;
-	private final double lambda;
-	private final double scaleUpFactor;
-	private final double scaleDownFactor;
-	private final int stopLock;
+	private final IClearing clearing;
+	private final ClearingMetrics clearingMetrics = new ClearingMetrics();
+
+	// the schedule of the day-ahead auction, or null when every hour is
+	// cleared as it comes
+	private final DayAheadSchedule schedule;
+
+	// where the plants' policies are restored from and checkpointed to, or
+	// null; a checkpoint is taken every policyCheckpoint ticks and at the end
+	private final PolicyStore policyStore;
+	private final int policyCheckpoint;
+
+	// the bids and quotas of the current hour
+	private final BidBook bidBook;
+	private final double[] quota;
 
 	public static Grid create(Node xml) {
+		return create(xml, new HashMap<String, PolicyStore>());
+	}
+
+	/**
+	 * @param policyStoreMap
+	 *            the policy stores opened so far by file name, so that the
+	 *            zones of a grid which name the same file share one store
+	 */
+	public static Grid create(Node xml, HashMap<String, PolicyStore> policyStoreMap) {
 		IReliability reliability = Reliability.create(xml);
 		IRandomDistribution blackoutRadius = RandomDistribution.create(XmlTools.getUptoOneNode(xml, XmlNode.BlackoutRadius));
 
@@ -45,8 +79,9 @@ public class Auctioneer extends Grid {
 
 		ArrayList<Node> nodeList = XmlTools.getAtLeastOneNode(xml, XmlNode.PowerPlant);
 		ArrayList<PowerPlant> generatorList = new ArrayList<PowerPlant>();
+		QTable qTable = new QTable();
 		for (Node node : nodeList) {
-			generatorList.add(PowerPlant.create(node));
+			generatorList.add(PowerPlant.create(node, qTable));
 		}
 
 		String value = null;
@@ -69,38 +104,112 @@ public class Auctioneer extends Grid {
 		value = XmlTools.getAttributeValue(XmlTools.getUptoOneNode(xml, XmlNode.StopLock), XmlTools.XmlAttribute.value);
 		int stopLock = value != null ? Integer.parseInt(value) : 5000;
 
-		return new Auctioneer(blackoutRadius, reliability, priceAdjustment, accuracy, epsilon, lambda, scaleUpFactor, scaleDownFactor, stopLock, generatorList);
+		IClearing clearing = null;
+		ClearingType clearingType = XmlTools.getAttributeValue(XmlTools.getUptoOneNode(xml, XmlNode.Clearing), XmlTools.XmlAttribute.type, ClearingType.class);
+		switch (clearingType != null ? clearingType : ClearingType.Iterative) {
+		case MeritOrder:
+			clearing = new MeritOrderClearing(lambda);
+			break;
+		case Bracketed:
+			clearing = new BracketedClearing(SmartGridBuilder.getConfig().getPeriod(), accuracy, lambda, stopLock);
+			break;
+		case Iterative:
+		default:
+			clearing = new IterativeClearing(accuracy, epsilon, lambda, scaleUpFactor, scaleDownFactor, stopLock);
+		}
+
+		value = XmlTools.getAttributeValue(XmlTools.getUptoOneNode(xml, XmlNode.DayAhead), XmlTools.XmlAttribute.value);
+		boolean isDayAhead = value != null ? Boolean.parseBoolean(value) : false;
+
+		value = XmlTools.getAttributeValue(XmlTools.getUptoOneNode(xml, XmlNode.PolicyStore), XmlTools.XmlAttribute.value);
+		PolicyStore policyStore = null;
+		if (value != null) {
+			policyStore = policyStoreMap.get(value);
+			if (policyStore == null) {
+				policyStore = PolicyStore.open(value);
+				policyStoreMap.put(value, policyStore);
+			}
+			// the policies are kept by plant name
+			for (Node node : nodeList) {
+				String name = XmlTools.getAttributeValue(node, XmlTools.XmlAttribute.name);
+				if (name == null) {
+					System.err.println("A power plant without a name can not keep its policy in " + value + ".");
+					(new Exception()).printStackTrace();
+					System.exit(1);
+				} else if (!policyStore.register(name)) {
+					System.err.println("More than one power plant named " + name + " keeps its policy in " + value + ".");
+					(new Exception()).printStackTrace();
+					System.exit(1);
+				}
+			}
+			for (PowerPlant plant : generatorList) {
+				plant.restorePolicy(policyStore);
+			}
+		}
+
+		value = XmlTools.getAttributeValue(XmlTools.getUptoOneNode(xml, XmlNode.PolicyCheckpoint), XmlTools.XmlAttribute.value);
+		int policyCheckpoint = value != null ? Integer.parseInt(value) : 0;
+
+		return new Auctioneer(SmartGridBuilder.getConfig(), blackoutRadius, reliability, priceAdjustment, clearing, isDayAhead, accuracy, lambda, stopLock, policyStore, policyCheckpoint, generatorList);
 	}
 
-	private Auctioneer(IRandomDistribution blackoutRadius,
+	private Auctioneer(SimulationConfig config,
+			IRandomDistribution blackoutRadius,
 			IReliability reliability,
 			double priceAdjustment,
+			IClearing clearing,
+			boolean isDayAhead,
 			double accuracy,
-			double epsilon,
 			double lambda,
-			double scaleUpFactor,
-			double scaleDownFactor,
 			int stopLock,
+			PolicyStore policyStore,
+			int policyCheckpoint,
 			ArrayList<PowerPlant> generatorList) {
-		super(blackoutRadius, reliability, priceAdjustment);
+		super(config, blackoutRadius, reliability, priceAdjustment);
 		this.powerPlantList = generatorList;
-		this.accuracy = accuracy;
-		this.epsilon = epsilon;
-		this.lambda = lambda;
-		this.scaleUpFactor = scaleUpFactor;
-		this.scaleDownFactor = scaleDownFactor;
-		this.stopLock = stopLock;
+		this.clearing = clearing;
+		this.schedule = isDayAhead ? new DayAheadSchedule(config.getPeriod(), generatorList.size(), accuracy, lambda, stopLock) : null;
+		this.bidBook = new BidBook(generatorList.size());
+		this.quota = new double[generatorList.size()];
+		this.policyStore = policyStore;
+		this.policyCheckpoint = policyCheckpoint;
 	}
 
 	public void initialize() {
 		super.initialize();
 		currentBasePrice = null;
+
+		// a period is cleared ahead once a full period of demand is known to
+		// forecast it from; until then every hour is cleared as it comes
+		long tick = (long) SmartGridBuilder.getTickCount();
+		if (schedule != null && tick % config.getPeriod() == 0 && tick >= config.getPeriod()) {
+			clearDayAhead();
+		}
+	}
+
+	/**
+	 * Collects the bids of every plant for every hour of the coming period and
+	 * clears them against the demand predicted for each hour.
+	 */
+	private void clearDayAhead() {
+		long clearingStart = System.nanoTime();
+		for (int hour = 0; hour < schedule.getPeriod(); hour++) {
+			BidBook bidBook = schedule.getBidBook(hour);
+			for (int i = 0; i < powerPlantList.size(); i++) {
+				powerPlantList.get(i).placeBid(bidBook, i, hour);
+			}
+			schedule.setDemand(hour, getAvgPredictedDemandByPeriod(hour + 1));
+		}
+		schedule.clear(clearingMetrics);
+		clearingMetrics.recordWallTime(System.nanoTime() - clearingStart);
 	}
 
 	private Double currentBasePrice = null;
 
 	public double getCurrentBasePrice() {
-		if (currentBasePrice == null) {
+		if (schedule != null && schedule.isCleared()) {
+			return schedule.getPrice(((int) SmartGridBuilder.getTickCount()) % config.getPeriod());
+		} else if (currentBasePrice == null) {
 			return getPredictedBasePrice();
 		} else {
 			return currentBasePrice;
@@ -109,76 +218,136 @@ public class Auctioneer extends Grid {
 
 	@ScheduledMethod(start = 0, interval = 1, priority = -2)
 	public void execute() {
-		double epsilon = this.epsilon;
-		double lambda = this.lambda;
-		double quota[] = new double[powerPlantList.size()];
+		if (schedule != null && schedule.isCleared()) {
+			int hour = ((int) SmartGridBuilder.getTickCount()) % config.getPeriod();
+			for (int i = 0; i < powerPlantList.size(); i++) {
+				powerPlantList.get(i).execute(schedule.getQuota(hour, i));
+			}
+			currentBasePrice = schedule.getPrice(hour);
+			checkpointPoliciesIfDue();
+			return;
+		}
+
+		collectBids();
+		clear(0);
+		dispatch();
+	}
+
+	// the renewable supply and the least conventional supply of the bids
+	// collected for the current hour
+	private double renewableQuantity;
+	private double minConventionalQuantity;
+	private double shortfall;
+
+	/**
+	 * Collects the bid of every plant for the current hour.
+	 */
+	void collectBids() {
 		// System.err.println("-" + getCurrentDemand() + ", " + currentSoldPower
 		// + ", " + currentBoughtPower + ", gens" + powerPlantList.size());
 
-		double renewableQuantity = 0;
-		double weightedAvgRenuableCost = 0;
-		double minConventionalQuantity = 0;
+		renewableQuantity = 0;
+		minConventionalQuantity = 0;
 
 		for (int i = 0; i < powerPlantList.size(); i++) {
-			Bid bid = powerPlantList.get(i).getBid();
-			if (bid.a == 0 && bid.b == 0) {
-				renewableQuantity += bid.q_max;
-				weightedAvgRenuableCost += powerPlantList.get(i).getC() * bid.q_max;
+			powerPlantList.get(i).placeBid(bidBook, i);
+			quota[i] = 0;
+			if (bidBook.isRenewable(i)) {
+				renewableQuantity += bidBook.getMaxQuantity(i);
 			} else {
-				minConventionalQuantity += bid.q_min;
+				minConventionalQuantity += bidBook.getMinQuantity(i);
 			}
 		}
-		
-		if (renewableQuantity > 0) {
-			weightedAvgRenuableCost /= renewableQuantity;
-		} else { 
-			weightedAvgRenuableCost = 0;
+	}
+
+	/**
+	 * Clears the collected bids against the demand of the grid.
+	 * 
+	 * @param transfer
+	 *            the power the grid supplies to other grids on top of its own
+	 *            demand, negative when it is supplied by them
+	 * @return the clearing price lambda
+	 */
+	double clear(double transfer) {
+		double requestedDemand = getCurrentDemand() + transfer - renewableQuantity;
+		double currentDemand = Math.max(requestedDemand, minConventionalQuantity);
+
+		int hour = ((int) SmartGridBuilder.getTickCount()) % config.getPeriod();
+		long clearingStart = System.nanoTime();
+		double lambda = clearing.clear(bidBook, currentDemand, hour, quota, clearingMetrics);
+		clearingMetrics.recordWallTime(System.nanoTime() - clearingStart);
+
+		shortfall = requestedDemand - currentDemand + clearingMetrics.getResidual();
+		currentBasePrice = lambda;
+		return lambda;
+	}
+
+	/**
+	 * @return the power the last clearing left unsupplied, negative when the
+	 *         plants could not supply as little as was asked of them
+	 */
+	double getShortfall() {
+		return shortfall;
+	}
+
+	/**
+	 * @return the rate at which the cleared supply grows with the price
+	 */
+	double getSupplySlope() {
+		return bidBook.getSupplySlope(currentBasePrice);
+	}
+
+	/**
+	 * Hands every plant its quota from the last clearing.
+	 */
+	void dispatch() {
+		for (int i = 0; i < powerPlantList.size(); i++) {
+			powerPlantList.get(i).execute(quota[i]);
 		}
-		
-		double currentDemand = Math.max(getCurrentDemand() - renewableQuantity, minConventionalQuantity);
-				
-		int stopLock = this.stopLock;
-		while (Math.abs(epsilon) > this.accuracy && stopLock-- > 0) {
-			if (epsilon > 0) {
-				lambda *= this.scaleUpFactor;
-			} else {
-				lambda *= this.scaleDownFactor;
-			}
-			double quotaTotal = 0;
-			for (int i = 0; i < powerPlantList.size(); i++) {
-				Bid bid = powerPlantList.get(i).getBid();
-				if (bid.a != 0 && bid.b != 0) {
-					quota[i] = (lambda - bid.b) / (2 * bid.a);
-					// System.err.println(":" + i + ", " + quota[i] + ", bid = "
-					// +
-					// bid.a + ", " + bid.b);
-					if (quota[i] < bid.q_min) {
-						quota[i] = bid.q_min;
-					} else if (quota[i] > bid.q_max) {
-						quota[i] = bid.q_max;
-					}
-					quotaTotal += quota[i];
-				}
-			}
-			epsilon = currentDemand - quotaTotal;
+		checkpointPoliciesIfDue();
+	}
+	
+	private void checkpointPoliciesIfDue() {
+		long tick = (long) SmartGridBuilder.getTickCount();
+		if (policyCheckpoint > 0 && (tick + 1) % policyCheckpoint == 0) {
+			checkpointPolicies();
 		}
-		
-		if(stopLock <= 0) {
-			if(epsilon > 0) {
-				System.out.println("Not enough power.");
-			} else {
-				System.out.println("Too much power.");
+	}
+
+	/**
+	 * Saves what every plant has learned so far to the policy store, if there
+	 * is one.
+	 */
+	@ScheduledMethod(start = ScheduleParameters.END)
+	public void checkpointPolicies() {
+		if (policyStore != null) {
+			for (PowerPlant plant : powerPlantList) {
+				plant.storePolicy(policyStore);
 			}
+			policyStore.save();
 		}
+	}
 
-		for (int i = 0; i < powerPlantList.size(); i++) {
-			powerPlantList.get(i).execute(quota[i]);
-		}
+	public boolean isDayAhead() {
+		return schedule != null;
+	}
 
-//		currentBasePrice = Math.min(lambda, weightedAvgRenuableCost);
-		currentBasePrice = lambda;
+	public ClearingMetrics getClearingMetrics() {
+		return clearingMetrics;
 	}
-	
+
+	public int getClearingIterations() {
+		return clearingMetrics.getIterations();
+	}
+
+	public double getClearingResidual() {
+		return clearingMetrics.getResidual();
+	}
+
+	public double getClearingWallTime() {
+		return clearingMetrics.getWallTime();
+	}
+
 	@Override
 	public ArrayList<PowerPlant> getPlantList() {
 		// TODO Auto-generated method stub
@@ -0,0 +1,94 @@
+package power.auction;
+
+/**
+ * The bids of the power plants for one clearing, kept in parallel primitive
+ * arrays indexed by plant. A plant writes its bid of cost a*q^2 + b*q for a
+ * quantity q in [q_min, q_max] once per clearing, and the clearing methods
+ * read the book linearly instead of asking every plant for a Bid object.
+ */
+public class BidBook {
+	private final double[] a;
+	private final double[] b;
+	private final double[] minQuantity;
+	private final double[] maxQuantity;
+
+	public BidBook(int plantCount) {
+		a = new double[plantCount];
+		b = new double[plantCount];
+		minQuantity = new double[plantCount];
+		maxQuantity = new double[plantCount];
+	}
+
+	public int size() {
+		return a.length;
+	}
+
+	public void setBid(int plant, double a, double b, double minQuantity, double maxQuantity) {
+		this.a[plant] = a;
+		this.b[plant] = b;
+		this.minQuantity[plant] = minQuantity;
+		this.maxQuantity[plant] = maxQuantity;
+	}
+
+	public double getA(int plant) {
+		return a[plant];
+	}
+
+	public double getB(int plant) {
+		return b[plant];
+	}
+
+	public double getMinQuantity(int plant) {
+		return minQuantity[plant];
+	}
+
+	public double getMaxQuantity(int plant) {
+		return maxQuantity[plant];
+	}
+
+	/**
+	 * A renewable bid costs nothing and is always taken up to its q_max.
+	 */
+	public boolean isRenewable(int plant) {
+		return a[plant] == 0 && b[plant] == 0;
+	}
+
+	/**
+	 * Only a conventional bid is given a quota by the clearing.
+	 */
+	public boolean isConventional(int plant) {
+		return a[plant] != 0 && b[plant] != 0;
+	}
+
+	/**
+	 * @return the quantity the bid supplies at the price lambda
+	 */
+	public double getQuota(int plant, double lambda) {
+		double quota = (lambda - b[plant]) / (2 * a[plant]);
+		if (quota < minQuantity[plant]) {
+			return minQuantity[plant];
+		} else if (quota > maxQuantity[plant]) {
+			return maxQuantity[plant];
+		} else {
+			return quota;
+		}
+	}
+
+	/**
+	 * @return the rate at which the conventional supply grows with the price
+	 *         around lambda, which is the sum of 1/(2a) over the bids that are
+	 *         strictly between their bounds
+	 */
+	public double getSupplySlope(double lambda) {
+		double slope = 0;
+		for (int plant = 0; plant < a.length; plant++) {
+			if (isConventional(plant)) {
+				double quota = (lambda - b[plant]) / (2 * a[plant]);
+				if (quota > minQuantity[plant] && quota < maxQuantity[plant]) {
+					slope += 1 / (2 * a[plant]);
+				}
+			}
+		}
+		return slope;
+	}
+}
@@ -0,0 +1,122 @@
+package power.auction;
+
+import java.util.Arrays;
+
+/**
+ * Finds the clearing price by a safeguarded Newton iteration on the total
+ * quota, starting from the price this hour of the period cleared at the last
+ * time. The supply is bracketed from the start by the prices at which every
+ * bid sits at its q_min and at its q_max, and a Newton step that would leave
+ * the bracket, or that has no slope to follow, is replaced by a bisection.
+ * Since the supply is piecewise linear, a step taken within the segment of
+ * the root lands on it, and the prices of consecutive days seldom differ by
+ * more than a few segments.
+ */
+public class BracketedClearing implements IClearing {
+	private final double accuracy;
+	private final double lambda;
+	private final int stopLock;
+
+	// the last clearing price of every hour of the period
+	private final double[] previousLambda;
+
+	public BracketedClearing(int period, double accuracy, double lambda, int stopLock) {
+		this.accuracy = accuracy;
+		this.lambda = lambda;
+		this.stopLock = stopLock;
+		this.previousLambda = new double[period];
+		Arrays.fill(previousLambda, Double.NaN);
+	}
+
+	public double clear(BidBook bidBook, double demand, int hour, double[] quota, ClearingMetrics metrics) {
+		double low = Double.POSITIVE_INFINITY;
+		double high = Double.NEGATIVE_INFINITY;
+		double minSupply = 0;
+		double maxSupply = 0;
+		for (int i = 0; i < bidBook.size(); i++) {
+			if (bidBook.isConventional(i)) {
+				low = Math.min(low, 2 * bidBook.getA(i) * bidBook.getMinQuantity(i) + bidBook.getB(i));
+				high = Math.max(high, 2 * bidBook.getA(i) * bidBook.getMaxQuantity(i) + bidBook.getB(i));
+				minSupply += bidBook.getMinQuantity(i);
+				maxSupply += bidBook.getMaxQuantity(i);
+			}
+		}
+		if (low > high) {
+			// there is no conventional bid to clear
+			if (demand > 0) {
+				System.out.println("Not enough power.");
+			}
+			metrics.record(0, demand);
+			return lambda;
+		}
+
+		double lambda;
+		int iterations = 0;
+		if (demand <= minSupply) {
+			if (demand < minSupply) {
+				System.out.println("Too much power.");
+			}
+			lambda = low;
+		} else if (demand >= maxSupply) {
+			if (demand > maxSupply) {
+				System.out.println("Not enough power.");
+			}
+			lambda = high;
+		} else {
+			lambda = Double.isNaN(previousLambda[hour]) ? this.lambda : previousLambda[hour];
+			if (lambda <= low || lambda >= high) {
+				lambda = (low + high) / 2;
+			}
+			boolean isCleared = false;
+			while (!isCleared && iterations < stopLock) {
+				iterations++;
+				double supply = 0;
+				double slope = 0;
+				for (int i = 0; i < bidBook.size(); i++) {
+					if (bidBook.isConventional(i)) {
+						double q = (lambda - bidBook.getB(i)) / (2 * bidBook.getA(i));
+						if (q <= bidBook.getMinQuantity(i)) {
+							supply += bidBook.getMinQuantity(i);
+						} else if (q >= bidBook.getMaxQuantity(i)) {
+							supply += bidBook.getMaxQuantity(i);
+						} else {
+							supply += q;
+							slope += 1 / (2 * bidBook.getA(i));
+						}
+					}
+				}
+				double epsilon = demand - supply;
+				if (Math.abs(epsilon) <= accuracy) {
+					isCleared = true;
+				} else {
+					if (epsilon > 0) {
+						low = lambda;
+					} else {
+						high = lambda;
+					}
+					double next = slope > 0 ? lambda + epsilon / slope : Double.NaN;
+					if (!(next > low && next < high)) {
+						next = (low + high) / 2;
+					}
+					// the bracket cannot be narrowed below the precision of lambda
+					isCleared = next == lambda;
+					lambda = next;
+				}
+			}
+			if (!isCleared) {
+				System.out.println("The clearing did not converge.");
+			}
+			previousLambda[hour] = lambda;
+		}
+
+		double quotaTotal = 0;
+		for (int i = 0; i < bidBook.size(); i++) {
+			if (bidBook.isConventional(i)) {
+				quota[i] = bidBook.getQuota(i, lambda);
+				quotaTotal += quota[i];
+			}
+		}
+		metrics.record(iterations, demand - quotaTotal);
+		return lambda;
+	}
+}
@@ -0,0 +1,96 @@
+package power.auction;
+
+/**
+ * How the auction cleared the last time, and every time since the run
+ * started, so that the data gatherers can confirm that the clearing converges.
+ * A day-ahead auction clears every hour of the period in turn, each of which
+ * is counted as a clearing of its own.
+ */
+public class ClearingMetrics {
+	private int iterations;
+	private double residual;
+	private long wallTime;
+
+	private long clearingCount;
+	private long totalIterations;
+	private int maxIterations;
+	private double maxResidual;
+	private long totalWallTime;
+
+	/**
+	 * @param iterations
+	 *            the number of evaluations of the supply the clearing took
+	 * @param residual
+	 *            the demand less the quotas the clearing settled on
+	 */
+	public void record(int iterations, double residual) {
+		this.iterations = iterations;
+		this.residual = residual;
+		clearingCount++;
+		totalIterations += iterations;
+		maxIterations = Math.max(maxIterations, iterations);
+		maxResidual = Math.max(maxResidual, Math.abs(residual));
+	}
+
+	/**
+	 * @param wallTime
+	 *            the time the auction took to clear in nanoseconds, for all the
+	 *            hours it cleared
+	 */
+	public void recordWallTime(long wallTime) {
+		this.wallTime = wallTime;
+		totalWallTime += wallTime;
+	}
+
+	/**
+	 * @return the iterations of the last clearing, which is of the last hour
+	 *         of the period when the auction clears day-ahead
+	 */
+	public int getIterations() {
+		return iterations;
+	}
+
+	/**
+	 * @return the residual of the last clearing, see {@link #getIterations()}
+	 */
+	public double getResidual() {
+		return residual;
+	}
+
+	/**
+	 * @return the time the auction last took to clear in milliseconds, which
+	 *         is for the whole period when it clears day-ahead
+	 */
+	public double getWallTime() {
+		return wallTime / 1e6;
+	}
+
+	public long getClearingCount() {
+		return clearingCount;
+	}
+
+	public double getMeanIterations() {
+		return clearingCount > 0 ? (double) totalIterations / clearingCount : 0;
+	}
+
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	public double getMaxResidual() {
+		return maxResidual;
+	}
+
+	/**
+	 * @return the mean time of a clearing in milliseconds, where the time of a
+	 *         day-ahead auction is shared by the hours it clears
+	 */
+	public double getMeanWallTime() {
+		return clearingCount > 0 ? totalWallTime / 1e6 / clearingCount : 0;
+	}
+
+	@Override
+	public String toString() {
+		return "ClearingMetrics: {clearings: " + clearingCount + ", mean iterations: " + getMeanIterations() + ", max iterations: " + maxIterations + ", max residual: " + maxResidual + ", mean wall time: " + getMeanWallTime() + " ms}";
+	}
+}
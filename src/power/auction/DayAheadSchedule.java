@@ -0,0 +1,85 @@
+package power.auction;
+
+/**
+ * The bids, the demand and the cleared prices and quotas of every hour of a
+ * period, kept as one bid book and one row of quotas per hour, i.e. laid out
+ * as [hour][plant], so that the whole period is cleared in one pass over
+ * contiguous rows.
+ * 
+ * Every hour is cleared by a BracketedClearing, which starts the hour from the
+ * price it cleared at in the previous period.
+ */
+public class DayAheadSchedule {
+	private final BidBook[] bidBookList;
+	private final double[][] quota;
+	private final double[] demand;
+	private final double[] price;
+	private final BracketedClearing clearing;
+	private boolean isCleared;
+
+	public DayAheadSchedule(int period, int plantCount, double accuracy, double lambda, int stopLock) {
+		bidBookList = new BidBook[period];
+		for (int hour = 0; hour < period; hour++) {
+			bidBookList[hour] = new BidBook(plantCount);
+		}
+		quota = new double[period][plantCount];
+		demand = new double[period];
+		price = new double[period];
+		clearing = new BracketedClearing(period, accuracy, lambda, stopLock);
+		isCleared = false;
+	}
+
+	public int getPeriod() {
+		return demand.length;
+	}
+
+	public BidBook getBidBook(int hour) {
+		return bidBookList[hour];
+	}
+
+	/**
+	 * @param demand
+	 *            the demand forecast for the hour, before the renewable bids
+	 *            are taken off it
+	 */
+	public void setDemand(int hour, double demand) {
+		this.demand[hour] = demand;
+	}
+
+	public boolean isCleared() {
+		return isCleared;
+	}
+
+	public double getPrice(int hour) {
+		return price[hour];
+	}
+
+	public double getQuota(int hour, int plant) {
+		return quota[hour][plant];
+	}
+
+	/**
+	 * Clears every hour of the period.
+	 */
+	public void clear(ClearingMetrics metrics) {
+		for (int hour = 0; hour < demand.length; hour++) {
+			BidBook bidBook = bidBookList[hour];
+			double[] quota = this.quota[hour];
+
+			double renewableQuantity = 0;
+			double minConventionalQuantity = 0;
+			for (int plant = 0; plant < bidBook.size(); plant++) {
+				quota[plant] = 0;
+				if (bidBook.isRenewable(plant)) {
+					renewableQuantity += bidBook.getMaxQuantity(plant);
+				} else {
+					minConventionalQuantity += bidBook.getMinQuantity(plant);
+				}
+			}
+			double demand = Math.max(this.demand[hour] - renewableQuantity, minConventionalQuantity);
+
+			price[hour] = clearing.clear(bidBook, demand, hour, quota, metrics);
+		}
+		isCleared = true;
+	}
+}
@@ -0,0 +1,21 @@
+package power.auction;
+
+public interface IClearing {
+	/**
+	 * Sets the quota of every conventional bid so that the quotas add up to the
+	 * demand, as closely as the method allows.
+	 * 
+	 * @param bidBook
+	 *            the bids of the power plants
+	 * @param demand
+	 *            the demand left to the conventional plants
+	 * @param hour
+	 *            the hour of the period being cleared
+	 * @param quota
+	 *            receives the quota of each plant, in the order of the bids
+	 * @param metrics
+	 *            records the iterations and the residual of the clearing
+	 * @return the clearing price lambda
+	 */
+	public double clear(BidBook bidBook, double demand, int hour, double[] quota, ClearingMetrics metrics);
+}
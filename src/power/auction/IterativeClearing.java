@@ -0,0 +1,56 @@
+package power.auction;
+
+/**
+ * Searches for the clearing price by scaling lambda up while there is not
+ * enough power and down while there is too much, until the quotas are within
+ * the accuracy of the demand or the stop lock runs out.
+ */
+public class IterativeClearing implements IClearing {
+	private final double accuracy;
+	private final double epsilon;
+	private final double lambda;
+	private final double scaleUpFactor;
+	private final double scaleDownFactor;
+	private final int stopLock;
+
+	public IterativeClearing(double accuracy, double epsilon, double lambda, double scaleUpFactor, double scaleDownFactor, int stopLock) {
+		this.accuracy = accuracy;
+		this.epsilon = epsilon;
+		this.lambda = lambda;
+		this.scaleUpFactor = scaleUpFactor;
+		this.scaleDownFactor = scaleDownFactor;
+		this.stopLock = stopLock;
+	}
+
+	public double clear(BidBook bidBook, double demand, int hour, double[] quota, ClearingMetrics metrics) {
+		double epsilon = this.epsilon;
+		double lambda = this.lambda;
+
+		int stopLock = this.stopLock;
+		while (Math.abs(epsilon) > this.accuracy && stopLock-- > 0) {
+			if (epsilon > 0) {
+				lambda *= this.scaleUpFactor;
+			} else {
+				lambda *= this.scaleDownFactor;
+			}
+			double quotaTotal = 0;
+			for (int i = 0; i < bidBook.size(); i++) {
+				if (bidBook.isConventional(i)) {
+					quota[i] = bidBook.getQuota(i, lambda);
+					quotaTotal += quota[i];
+				}
+			}
+			epsilon = demand - quotaTotal;
+		}
+
+		if (stopLock <= 0) {
+			if (epsilon > 0) {
+				System.out.println("Not enough power.");
+			} else {
+				System.out.println("Too much power.");
+			}
+		}
+		metrics.record(this.stopLock - Math.max(stopLock, 0), epsilon);
+		return lambda;
+	}
+}
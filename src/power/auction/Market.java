@@ -2,6 +2,8 @@ package power.auction;
 
 import org.w3c.dom.Node;
 
+import power.SimulationConfig;
+import power.SmartGridBuilder;
 import power.components.Grid;
 import power.components.IReliability;
 import power.components.Reliability;
@@ -27,14 +29,15 @@ public class Market extends Grid {
 
 		IRandomModel randomModel = RandomModel.create(XmlTools.getExactlyOneNode(xml, XmlNode.PowerRateRandomModel));
 		double priceAdjustment = Double.parseDouble(XmlTools.getAttributeValue(XmlTools.getExactlyOneNode(xml, XmlNode.PriceAdjustment), XmlTools.XmlAttribute.value));
-		return new Market(randomModel, blackoutRadius, reliability, priceAdjustment);
+		return new Market(SmartGridBuilder.getConfig(), randomModel, blackoutRadius, reliability, priceAdjustment);
 	}
 
-	public Market(IRandomModel randomModel,
+	public Market(SimulationConfig config,
+			IRandomModel randomModel,
 			IRandomDistribution blackoutRadius,
 			IReliability reliability,
 			double priceAdjustment) {
-		super(blackoutRadius, reliability, priceAdjustment);
+		super(config, blackoutRadius, reliability, priceAdjustment);
 		this.randomModel = randomModel;
 		this.randomModel.getModel().setSource(this);
 	}
@@ -0,0 +1,134 @@
+package power.auction;
+
+/**
+ * Solves for the clearing price exactly. A bid with the cost a*q^2 + b*q
+ * supplies (lambda - b) / (2a) clamped to [q_min, q_max], so the total supply
+ * is a piecewise-linear function of lambda which bends only where a bid
+ * reaches its q_min (at lambda = 2a*q_min + b) or its q_max (at lambda =
+ * 2a*q_max + b). The breakpoints are sorted and swept in order, accumulating
+ * the slope of the supply, until the segment holding the demand is found, so
+ * that a clearing costs O(n log n) for n bids.
+ */
+public class MeritOrderClearing implements IClearing {
+	// the price when there is no conventional bid to clear
+	private final double lambda;
+
+	// the breakpoints of the supply and the change of its slope at each,
+	// kept between clearings
+	private double[] price = new double[0];
+	private double[] slope = new double[0];
+
+	public MeritOrderClearing(double lambda) {
+		this.lambda = lambda;
+	}
+
+	public double clear(BidBook bidBook, double demand, int hour, double[] quota, ClearingMetrics metrics) {
+		int count = 0;
+		for (int i = 0; i < bidBook.size(); i++) {
+			if (bidBook.isConventional(i)) {
+				count++;
+			}
+		}
+		if (count == 0) {
+			if (demand > 0) {
+				System.out.println("Not enough power.");
+			}
+			metrics.record(0, demand);
+			return lambda;
+		}
+
+		// every bid contributes a breakpoint at which its slope joins the
+		// supply and one at which it leaves
+		if (price.length < 2 * count) {
+			price = new double[2 * count];
+			slope = new double[2 * count];
+		}
+		double supply = 0;
+		int length = 0;
+		for (int i = 0; i < bidBook.size(); i++) {
+			if (bidBook.isConventional(i)) {
+				double a = bidBook.getA(i);
+				double b = bidBook.getB(i);
+				price[length] = 2 * a * bidBook.getMinQuantity(i) + b;
+				slope[length] = 1 / (2 * a);
+				length++;
+				price[length] = 2 * a * bidBook.getMaxQuantity(i) + b;
+				slope[length] = -1 / (2 * a);
+				length++;
+				supply += bidBook.getMinQuantity(i);
+			}
+		}
+		sort(price, slope, length);
+
+		double lambda = price[0];
+		int iterations = 0;
+		if (demand < supply) {
+			System.out.println("Too much power.");
+		} else {
+			double currentSlope = 0;
+			boolean isCleared = false;
+			for (int k = 0; k < length && !isCleared; k++) {
+				iterations++;
+				double nextSupply = supply + currentSlope * (price[k] - lambda);
+				if (nextSupply >= demand && currentSlope > 0) {
+					lambda += (demand - supply) / currentSlope;
+					isCleared = true;
+				} else {
+					supply = nextSupply;
+					lambda = price[k];
+					currentSlope += slope[k];
+				}
+			}
+			if (!isCleared && demand > supply) {
+				System.out.println("Not enough power.");
+			}
+		}
+
+		double quotaTotal = 0;
+		for (int i = 0; i < bidBook.size(); i++) {
+			if (bidBook.isConventional(i)) {
+				quota[i] = bidBook.getQuota(i, lambda);
+				quotaTotal += quota[i];
+			}
+		}
+		metrics.record(iterations, demand - quotaTotal);
+		return lambda;
+	}
+
+	/**
+	 * Heap sorts the first length keys in place, carrying the values along.
+	 */
+	private static void sort(double[] key, double[] value, int length) {
+		for (int root = length / 2 - 1; root >= 0; root--) {
+			siftDown(key, value, root, length);
+		}
+		for (int end = length - 1; end > 0; end--) {
+			swap(key, value, 0, end);
+			siftDown(key, value, 0, end);
+		}
+	}
+
+	private static void siftDown(double[] key, double[] value, int root, int length) {
+		int child = 2 * root + 1;
+		while (child < length) {
+			if (child + 1 < length && key[child + 1] > key[child]) {
+				child++;
+			}
+			if (key[root] >= key[child]) {
+				return;
+			}
+			swap(key, value, root, child);
+			root = child;
+			child = 2 * root + 1;
+		}
+	}
+
+	private static void swap(double[] key, double[] value, int first, int second) {
+		double temp = key[first];
+		key[first] = key[second];
+		key[second] = temp;
+		temp = value[first];
+		value[first] = value[second];
+		value[second] = temp;
+	}
+}
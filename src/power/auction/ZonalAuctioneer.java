@@ -0,0 +1,437 @@
+package power.auction;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.w3c.dom.Node;
+
+import power.SimulationConfig;
+import power.SmartGridBuilder;
+import power.components.Grid;
+import power.components.GridLedger;
+import power.components.IReliability;
+import power.components.PowerPlant;
+import power.components.Reliability;
+import power.distributions.IRandomDistribution;
+import power.distributions.RandomDistribution;
+import power.engine.HeadlessEngine;
+import power.helpers.XmlTools;
+import power.tools.PolicyStore;
+import repast.simphony.engine.schedule.ScheduleParameters;
+import repast.simphony.engine.schedule.ScheduledMethod;
+
+/**
+ * A grid split into zones, each of which is an Auctioneer with power plants
+ * and agent generators of its own. The agents trade with the zone of their
+ * generator, so the demand is accounted for per zone, and the zones are
+ * cleared concurrently. The zones are then coupled by moving power from the
+ * cheap zones to the expensive ones, up to the transfer limit of each zone,
+ * and clearing again until the prices agree or the limits bind.
+ *
+ * The zones are configured by &lt;Zone name="..."&gt; nodes, which hold the
+ * configuration of an Auctioneer along with an &lt;AgentGenerator name="..."/&gt;
+ * node for every generator trading in the zone and an optional
+ * &lt;TransferLimit value="..."/&gt;.
+ */
+public class ZonalAuctioneer extends Grid {
+
+	private enum XmlNode {
+		PriceAdjustment,
+		BlackoutRadius,
+		Zone,
+		AgentGenerator,
+		TransferLimit,
+		CouplingIterations,
+		Accuracy
+	};
+
+	private final String[] zoneNames;
+	private final Auctioneer[] zones;
+	private final HashMap<String, Auctioneer> zoneMap;
+
+	// the power each zone supplies to the others, negative when it is
+	// supplied by them, and the most it may supply or be supplied
+	private final double[] transfer;
+	private final double[] transferLimit;
+
+	// the price, the supply slope and the shortfall of each zone at its last
+	// clearing
+	private final double[] zonePrice;
+	private final double[] zoneSlope;
+	private final double[] zoneShortfall;
+
+	private final int maxCouplingIterations;
+	private final double accuracy;
+	private int couplingIterations;
+
+	// clears the zones concurrently when the headless engine has no pool of
+	// its own, created on the first clearing and shut down at the end of the
+	// run
+	private ForkJoinPool pool;
+
+	// the ledgers of the zones which go with each ledger of the grid
+	private final Map<GridLedger, GridLedger[]> zoneLedgerMap = Collections.synchronizedMap(new IdentityHashMap<GridLedger, GridLedger[]>());
+
+	private class ZoneClearing extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+
+		public ZoneClearing(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= 1) {
+				clearZone(from);
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ZoneClearing(from, middle), new ZoneClearing(middle, to));
+			}
+		}
+	}
+
+	public static Grid create(Node xml) {
+		IReliability reliability = Reliability.create(xml);
+		IRandomDistribution blackoutRadius = RandomDistribution.create(XmlTools.getUptoOneNode(xml, XmlNode.BlackoutRadius));
+
+		double priceAdjustment = Double.parseDouble(XmlTools.getAttributeValue(XmlTools.getExactlyOneNode(xml, XmlNode.PriceAdjustment), XmlTools.XmlAttribute.value));
+
+		String value = null;
+
+		value = XmlTools.getAttributeValue(XmlTools.getUptoOneNode(xml, XmlNode.CouplingIterations), XmlTools.XmlAttribute.value);
+		int maxCouplingIterations = value != null ? Integer.parseInt(value) : 10;
+
+		value = XmlTools.getAttributeValue(XmlTools.getUptoOneNode(xml, XmlNode.Accuracy), XmlTools.XmlAttribute.value);
+		double accuracy = value != null ? Double.parseDouble(value) : 0.01;
+
+		ArrayList<Node> zoneNodeList = XmlTools.getAtLeastOneNode(xml, XmlNode.Zone);
+		String[] zoneNames = new String[zoneNodeList.size()];
+		Auctioneer[] zones = new Auctioneer[zoneNodeList.size()];
+		double[] transferLimit = new double[zoneNodeList.size()];
+		HashMap<String, Auctioneer> zoneMap = new HashMap<String, Auctioneer>();
+		HashMap<String, PolicyStore> policyStoreMap = new HashMap<String, PolicyStore>();
+		for (int index = 0; index < zones.length; index++) {
+			Node zoneNode = zoneNodeList.get(index);
+			zoneNames[index] = XmlTools.getHardAttributeValue(zoneNode, XmlTools.XmlAttribute.name);
+			zones[index] = (Auctioneer) Auctioneer.create(zoneNode, policyStoreMap);
+			if (zones[index].isDayAhead()) {
+				System.err.println("The zone " + zoneNames[index] + " can not clear day-ahead.");
+				(new Exception()).printStackTrace();
+				System.exit(1);
+			}
+
+			value = XmlTools.getAttributeValue(XmlTools.getUptoOneNode(zoneNode, XmlNode.TransferLimit), XmlTools.XmlAttribute.value);
+			transferLimit[index] = value != null ? Double.parseDouble(value) : Double.POSITIVE_INFINITY;
+
+			for (Node node : XmlTools.getAllNodes(zoneNode, XmlNode.AgentGenerator)) {
+				String agentGeneratorName = XmlTools.getHardAttributeValue(node, XmlTools.XmlAttribute.name);
+				if (zoneMap.put(agentGeneratorName, zones[index]) != null) {
+					System.err.println("The agent generator " + agentGeneratorName + " is in more than one zone.");
+					(new Exception()).printStackTrace();
+					System.exit(1);
+				}
+			}
+		}
+
+		return new ZonalAuctioneer(SmartGridBuilder.getConfig(), blackoutRadius, reliability, priceAdjustment, zoneNames, zones, zoneMap, transferLimit, maxCouplingIterations, accuracy);
+	}
+
+	private ZonalAuctioneer(SimulationConfig config,
+			IRandomDistribution blackoutRadius,
+			IReliability reliability,
+			double priceAdjustment,
+			String[] zoneNames,
+			Auctioneer[] zones,
+			HashMap<String, Auctioneer> zoneMap,
+			double[] transferLimit,
+			int maxCouplingIterations,
+			double accuracy) {
+		super(config, blackoutRadius, reliability, priceAdjustment);
+		this.zoneNames = zoneNames;
+		this.zones = zones;
+		this.zoneMap = zoneMap;
+		this.transfer = new double[zones.length];
+		this.transferLimit = transferLimit;
+		this.zonePrice = new double[zones.length];
+		this.zoneSlope = new double[zones.length];
+		this.zoneShortfall = new double[zones.length];
+		this.maxCouplingIterations = maxCouplingIterations;
+		this.accuracy = accuracy;
+	}
+
+	@Override
+	public Grid getZone(String agentGeneratorName) {
+		Auctioneer zone = zoneMap.get(agentGeneratorName);
+		if (zone == null) {
+			System.err.println("The agent generator " + agentGeneratorName + " is in no zone.");
+			(new Exception()).printStackTrace();
+			System.exit(1);
+		}
+		return zone;
+	}
+
+	public void initialize() {
+		super.initialize();
+		for (Auctioneer zone : zones) {
+			zone.initialize();
+		}
+	}
+
+	/**
+	 * The mean of the zone prices, weighted by the demand of each zone.
+	 */
+	public double getCurrentBasePrice() {
+		double priceSum = 0;
+		double demandSum = 0;
+		for (Auctioneer zone : zones) {
+			double demand = Math.abs(zone.getCurrentDemand());
+			priceSum += demand * zone.getCurrentBasePrice();
+			demandSum += demand;
+		}
+		if (demandSum > 0) {
+			return priceSum / demandSum;
+		}
+
+		priceSum = 0;
+		for (Auctioneer zone : zones) {
+			priceSum += zone.getCurrentBasePrice();
+		}
+		return priceSum / zones.length;
+	}
+
+	@ScheduledMethod(start = 0, interval = 1, priority = -2)
+	public void execute() {
+		// the plants bid one after another so that the random streams they
+		// draw from are used in the same order on every run
+		for (int index = 0; index < zones.length; index++) {
+			zones[index].collectBids();
+			transfer[index] = 0;
+		}
+
+		couplingIterations = 0;
+		while (true) {
+			clearZones();
+			couplingIterations++;
+			if (couplingIterations >= maxCouplingIterations || !coupleZones()) {
+				break;
+			}
+		}
+
+		for (Auctioneer zone : zones) {
+			zone.dispatch();
+		}
+	}
+
+	private void clearZones() {
+		if (zones.length == 1) {
+			clearZone(0);
+		} else {
+			getPool().invoke(new ZoneClearing(0, zones.length));
+		}
+	}
+
+	private ForkJoinPool getPool() {
+		if (HeadlessEngine.isActive() && HeadlessEngine.getInstance().getPool() != null) {
+			return HeadlessEngine.getInstance().getPool();
+		}
+		if (pool == null) {
+			pool = new ForkJoinPool(Math.min(zones.length, Runtime.getRuntime().availableProcessors()));
+		}
+		return pool;
+	}
+
+	private void clearZone(int index) {
+		zonePrice[index] = zones[index].clear(transfer[index]);
+		zoneSlope[index] = zones[index].getSupplySlope();
+		zoneShortfall[index] = zones[index].getShortfall();
+	}
+
+	/**
+	 * Moves power from the zones priced under the mean to the zones priced
+	 * over it, as much as is expected to bring each zone to the mean given
+	 * the slope of its supply, and from the zones left with a surplus to the
+	 * zones left short. What the zones are left short of on balance is taken
+	 * from the zones in proportion to their slopes, and the transfers are then
+	 * cut to their limits so that what is moved out of the zones always equals
+	 * what is moved into them.
+	 *
+	 * @return whether the transfers changed, and the zones have to be cleared
+	 *         again
+	 */
+	private boolean coupleZones() {
+		double minPrice = Double.POSITIVE_INFINITY;
+		double maxPrice = Double.NEGATIVE_INFINITY;
+		double maxShortfall = 0;
+		double slopeSum = 0;
+		double weightedPriceSum = 0;
+		for (int index = 0; index < zones.length; index++) {
+			minPrice = Math.min(minPrice, zonePrice[index]);
+			maxPrice = Math.max(maxPrice, zonePrice[index]);
+			maxShortfall = Math.max(maxShortfall, Math.abs(zoneShortfall[index]));
+			slopeSum += zoneSlope[index];
+			weightedPriceSum += zoneSlope[index] * zonePrice[index];
+		}
+		if (maxPrice - minPrice <= accuracy && maxShortfall <= accuracy) {
+			return false;
+		}
+
+		double[] nextTransfer = new double[zones.length];
+		double balance = 0;
+		for (int index = 0; index < zones.length; index++) {
+			nextTransfer[index] = -zoneShortfall[index];
+			balance += nextTransfer[index];
+		}
+		if (slopeSum > 0) {
+			double meanPrice = weightedPriceSum / slopeSum;
+			for (int index = 0; index < zones.length; index++) {
+				nextTransfer[index] += zoneSlope[index] * (meanPrice - zonePrice[index]) - balance * zoneSlope[index] / slopeSum;
+			}
+		}
+
+		double exportSum = 0;
+		double importSum = 0;
+		for (int index = 0; index < zones.length; index++) {
+			double next = transfer[index] + nextTransfer[index];
+			next = Math.max(-transferLimit[index], Math.min(transferLimit[index], next));
+			nextTransfer[index] = next;
+			if (next > 0) {
+				exportSum += next;
+			} else {
+				importSum -= next;
+			}
+		}
+
+		// the limits may have cut one side more than the other, so the
+		// larger side is scaled down to the smaller one
+		double exportScale = exportSum > importSum ? importSum / exportSum : 1;
+		double importScale = importSum > exportSum ? exportSum / importSum : 1;
+		double change = 0;
+		for (int index = 0; index < zones.length; index++) {
+			double next = nextTransfer[index] * (nextTransfer[index] > 0 ? exportScale : importScale);
+			change = Math.max(change, Math.abs(next - transfer[index]));
+			transfer[index] = next;
+		}
+		return change > 0;
+	}
+
+	/**
+	 * Saves what the plants of every zone have learned so far.
+	 */
+	@ScheduledMethod(start = ScheduleParameters.END)
+	public void checkpointPolicies() {
+		for (Auctioneer zone : zones) {
+			zone.checkpointPolicies();
+		}
+	}
+
+	/**
+	 * Stops the threads which cleared the zones, so that a batch of runs does
+	 * not leave a pool behind for every run.
+	 */
+	@ScheduledMethod(start = ScheduleParameters.END)
+	public void shutdownPool() {
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+
+	public void finalize() {
+		for (Auctioneer zone : zones) {
+			zone.finalize();
+			mergeZone(zone);
+		}
+		super.finalize();
+	}
+
+	/*
+	 * The agents trade with their zones, so the ledgers of a worker are opened
+	 * in every zone and merged zone by zone.
+	 */
+	@Override
+	public void openLedger(GridLedger ledger) {
+		super.openLedger(ledger);
+		GridLedger[] zoneLedgers = zoneLedgerMap.get(ledger);
+		if (zoneLedgers == null) {
+			zoneLedgers = new GridLedger[zones.length];
+			for (int index = 0; index < zones.length; index++) {
+				zoneLedgers[index] = new GridLedger();
+			}
+			zoneLedgerMap.put(ledger, zoneLedgers);
+		}
+		for (int index = 0; index < zones.length; index++) {
+			zoneLedgers[index].setBuyBackShare(ledger.getBuyBackShare());
+			zones[index].openLedger(zoneLedgers[index]);
+		}
+	}
+
+	@Override
+	public void closeLedger() {
+		for (Auctioneer zone : zones) {
+			zone.closeLedger();
+		}
+		super.closeLedger();
+	}
+
+	@Override
+	public void mergeLedger(GridLedger ledger) {
+		GridLedger[] zoneLedgers = zoneLedgerMap.get(ledger);
+		if (zoneLedgers != null) {
+			for (int index = 0; index < zones.length; index++) {
+				zones[index].mergeLedger(zoneLedgers[index]);
+			}
+		}
+		super.mergeLedger(ledger);
+	}
+
+	public int getZoneCount() {
+		return zones.length;
+	}
+
+	public String getZoneName(int index) {
+		return zoneNames[index];
+	}
+
+	public Auctioneer getZone(int index) {
+		return zones[index];
+	}
+
+	/**
+	 * @return the power the zone supplied to the others in the last clearing,
+	 *         negative when it was supplied by them
+	 */
+	public double getTransfer(int index) {
+		return transfer[index];
+	}
+
+	public int getCouplingIterations() {
+		return couplingIterations;
+	}
+
+	public String getCouplingIterationsLabel() {
+		return "Zone coupling iterations";
+	}
+
+	@Override
+	public ArrayList<PowerPlant> getPlantList() {
+		ArrayList<PowerPlant> plantList = new ArrayList<PowerPlant>();
+		for (Auctioneer zone : zones) {
+			plantList.addAll(zone.getPlantList());
+		}
+		return plantList;
+	}
+
+	@Override
+	public String toString() {
+		return "The Zonal Grid";
+	}
+}
@@ -1,18 +1,21 @@
 package power.components;
 
 import java.util.ArrayList;
+
+import power.SimulationConfig;
 import power.SmartGridBuilder;
+import power.components.AgentStateTable.Column;
 import power.components.generators.AgentGenerator;
+import power.engine.ParallelSafe;
 import power.helpers.AdjustedRunningMax;
 import power.helpers.RunningMean;
 import power.models.IRandomModel;
+import power.networks.AdjacencySnapshot;
 import power.tools.Absolute;
 import power.tools.Clamp;
 import power.tools.IDescribable;
 
 import repast.simphony.engine.schedule.ScheduledMethod;
-import repast.simphony.essentials.RepastEssentials;
-import repast.simphony.random.RandomHelper;
 import repast.simphony.space.graph.RepastEdge;
 
 /**
@@ -34,6 +37,7 @@ public class Agent implements IDescribable {
 	private int period;
 
 	// Fundamental characteristics
+	private final SimulationConfig config;
 	private final Grid grid;
 	private final AgentGenerator group;
 	private final IRandomModel suspendableModel;
@@ -47,41 +51,30 @@ public class Agent implements IDescribable {
 	private final AdjustedRunningMax demandWindow;
 	private final RunningMean deficitWindow;
 	private final RunningMean neighborhoodRequestWindow;
+	private final ForesightProfile foresightProfile;
 	// private final RunningMean priceWindow;
 
 	// Characteristics
-	private boolean isConnectedToGrid;
-	private double currentlySatisfiedLoad;
-	private double currentlySpentGeneration;
-
-	private double suspendedLoad;
-	private double currentAddedSuspension;
-	private double currentRemovedSuspension;
-
-	// zero by default
-	private double currentPowerBoughtFromGrid;
-	private double currentPowerBoughtFromNeighbors;
-	private double currentPowerSoldToGrid;
-	private double currentPowerSoldToNeighbors;
-	private double currentNeighborhoodRequest;
-	private double currentDumpedPower;
-	private double currentForcefullySuspendedLoad;
-
-	// accounting
-	// zero by default
-	private double currentDebitToGrid;
-	private double currentDebitToNeighbors;
-	private double currentCreditFromGrid;
-	private double currentCreditFromNeighbors;
-
-	// zero by default
-	private double currentStorageCost;
-	private double currentGenerationCost;
-
+	// the loads, trades and accounts live in the state table of the group
+	private final AgentStateTable state;
+	private final int row;
 	private static int population = 0;
 	private int id;
+	// the index of the agent in the adjacency snapshot of the network
+	private int networkIndex = -1;
+
+	// set while the agent executes concurrently with other agents
+	private boolean isExecutingConcurrently;
+	private ArrayList<Agent> pendingSellerList;
+	private ArrayList<Double> pendingPowerList;
+
+	// the power the agent offers its neighbors this tick, drawn down as their
+	// bids are matched, and the book its own bids are matched in
+	private double askQuantity;
+	private final NeighborhoodOrderBook orderBook = new NeighborhoodOrderBook();
 
-	public Agent(Grid grid,
+	public Agent(SimulationConfig config,
+			Grid grid,
 			AgentGenerator group,
 			IReliability reliability,
 			IRandomModel suspendableModel,
@@ -90,11 +83,13 @@ public class Agent implements IDescribable {
 			Storage storage,
 			int foresight) {
 		id = population++;
-		isConnectedToGrid = true;
 		// System.out.println("Constructing: " + this.toString());
 
+		this.config = config;
 		this.grid = grid;
 		this.group = group;
+		this.state = group.getStateTable();
+		this.row = state.addRow();
 
 		if (reliability == null) {
 			this.reliability = BlankReliability.getBlankReliability();
@@ -116,66 +111,93 @@ public class Agent implements IDescribable {
 		this.storage = storage;
 		this.foresight = foresight;
 
-		demandWindow = new AdjustedRunningMax(Absolute.getSingleton());
-		deficitWindow = new RunningMean();
-		neighborhoodRequestWindow = new RunningMean();
+		demandWindow = new AdjustedRunningMax(config, Absolute.getSingleton());
+		deficitWindow = new RunningMean(config);
+		neighborhoodRequestWindow = new RunningMean(config);
+		foresightProfile = new ForesightProfile(foresight);
 		// priceWindow = grid.getPriceWindow();
 	}
 
+	/**
+	 * Draws this tick's generation and load. Everything else done by
+	 * initialize() and finalize() is local to the agent, which allows the
+	 * headless engine to run them concurrently once the draws were made in
+	 * schedule order.
+	 */
+	public void sampleModels() {
+		generationModel.getCurrentValue();
+		loadModel.getCurrentValue();
+	}
+
 	@ScheduledMethod(start = 0, interval = 1, priority = 1)
+	@ParallelSafe(prelude = "sampleModels")
 	public void initialize() {
 //		System.err.println("Agent init");
+		sampleModels();
 		phase = SimulationPhase.Init;
-		period = ((int) RepastEssentials.GetTickCount()) % SmartGridBuilder.getPeriod();
+		period = ((int) SmartGridBuilder.getTickCount()) % config.getPeriod();
 
 		// clean memoirs
-		overAverageDeficit = null;
-		underAverageDeficit = null;
-		localOverAverageDeficit = null;
-		localUnderAverageDeficit = null;
-		dynamicOverAverageDeficit = null;
-		dynamicUnderAverageDeficit = null;
-		localOverAverageRequest = null;
-		localUnderAverageRequest = null;
-		buyingFromNeighborsAvailability = null;
+		foresightProfile.invalidate();
 		neighborhoodRequestRation = null;
 
-		// load
-		currentlySatisfiedLoad = 0;
-		currentlySpentGeneration = 0;
-		currentAddedSuspension = 0;
-		currentRemovedSuspension = 0;
-		currentForcefullySuspendedLoad = 0;
-
-		currentPowerBoughtFromGrid = 0;
-		currentPowerBoughtFromNeighbors = 0;
-		currentPowerSoldToGrid = 0;
-		currentPowerSoldToNeighbors = 0;
-		currentNeighborhoodRequest = 0;
-		currentDumpedPower = 0;
-
-		currentStorageCost = storage.getCostFactor() * storage.getCapacity();
-		currentGenerationCost = generationModel.getCostFactor() * generationModel.getCurrentValue();
-
-		currentDebitToGrid = 0;
-		currentDebitToNeighbors = 0;
-		currentCreditFromGrid = 0;
-		currentCreditFromNeighbors = 0;
+		// the rest of the per-tick state was reset by the group
+		state.set(Column.StorageCost, row, storage.getCostFactor() * storage.getCapacity());
+		state.set(Column.GenerationCost, row, generationModel.getCostFactor() * generationModel.getCurrentValue());
 
 		deficitWindow.add(getDeficit());
+
+		// the ask is posted once, before any neighbor bids
+		askQuantity = getSellingToNeighborsAvailability();
 	}
 
 	@ScheduledMethod(start = 0, interval = 1, priority = -1)
+	@ParallelSafe
 	public void finalize() {
 //		System.err.println("Agent fin");
 		phase = SimulationPhase.Fin;
 
-		suspendedLoad = getCurrentSuspendedLoad();
+		state.set(Column.SuspendedLoad, row, getCurrentSuspendedLoad());
 		demandWindow.add(getCurrentDemand());
 		neighborhoodRequestWindow.add(getCurrentNeighborhoodRequest());
 	}
 
+	/**
+	 * Makes the draws from the shared random stream which execute() would
+	 * otherwise make lazily, so that agents far enough apart in the network
+	 * can execute concurrently.
+	 */
+	public void prepareExecution() {
+		grid.getCurrentBasePrice();
+		if (config.getCanSuspendLoad()) {
+			suspendableModel.getCurrentValue();
+		}
+	}
+
+	/**
+	 * While executing concurrently the trading edges of the network are only
+	 * updated by {@link #endConcurrentExecution()}, since the network itself is
+	 * not thread safe.
+	 */
+	public void beginConcurrentExecution() {
+		isExecutingConcurrently = true;
+		if (pendingSellerList == null) {
+			pendingSellerList = new ArrayList<Agent>();
+			pendingPowerList = new ArrayList<Double>();
+		}
+	}
+
+	public void endConcurrentExecution() {
+		for (int index = 0; index < pendingSellerList.size(); index++) {
+			pendingSellerList.get(index).orientTradingEdge(this, pendingPowerList.get(index));
+		}
+		pendingSellerList.clear();
+		pendingPowerList.clear();
+		isExecutingConcurrently = false;
+	}
+
 	@ScheduledMethod(start = 0, interval = 1, priority = 0)
+	@ParallelSafe(prelude = "prepareExecution", scope = ParallelSafe.Scope.Neighborhood)
 	public void execute() {
 //		System.out.println("+" + RepastEssentials.GetTickCount() + ": " + toString());
 		phase = SimulationPhase.Exec;
@@ -229,7 +251,7 @@ public class Agent implements IDescribable {
 
 				spendAvailablePower(entities, storage.energize(getAvailablePower(entities, battRation)));
 
-				if (SmartGridBuilder.getForceDumping()) {
+				if (config.getForceDumping()) {
 					spendGeneratedPower(sellToGrid(getGenerationAvailability(-meanDeficit)));
 				} else {
 					spendGeneratedPower(sellToGrid(getCurrentRemainingGeneration()));
@@ -250,7 +272,7 @@ public class Agent implements IDescribable {
 			}
 		}
 
-		if (SmartGridBuilder.getCanTrade() &&
+		if (config.getCanTrade() &&
 				storage.getCurrentAvailableCapacity() > getLocalUnderAverageDeficit() &&
 				getMeanNeighborhoodRequest() > getPredictedNeighborhoodRequest()) {
 			double request = getMeanNeighborhoodRequest() - getPredictedNeighborhoodRequest();
@@ -282,133 +304,98 @@ public class Agent implements IDescribable {
 	/*
 	 * Blackout methods
 	 */
-	public void reconnectToGrid() {
-		isConnectedToGrid = true;
-	}
-
-	public void disconnectFromGrid() {
-		isConnectedToGrid = false;
-	}
-
 	public boolean isConnectedToGrid() {
-		return isConnectedToGrid;
+		return SmartGridBuilder.getOutages().isConnected(networkIndex);
 	}
 
 	/*
 	 * interaction methods
 	 */
 	private double getBuyingFromGridAvailability(double power) {
-		if (!isConnectedToGrid)
+		if (!isConnectedToGrid())
 			return 0.0;
 		return power;
 	}
 
 	private double buyFromGrid(double power) {
-		if (!isConnectedToGrid)
+		if (!isConnectedToGrid())
 			return 0.0;
 		double powerBought = grid.buyFromGrid(power);
-		currentPowerBoughtFromGrid += powerBought;
-		currentDebitToGrid += grid.getSellingValue(powerBought);
+		state.add(Column.PowerBoughtFromGrid, row, powerBought);
+		state.add(Column.DebitToGrid, row, grid.getSellingValue(powerBought));
 		return powerBought;
 	}
 
 	private double getSellingToGridAvailability(double power) {
-		if (!isConnectedToGrid)
+		if (!isConnectedToGrid())
 			return 0.0;
 		return grid.getSellToGridAvailability(power);
 	}
 
 	private double sellToGrid(double power) {
-		if (!isConnectedToGrid)
+		if (!isConnectedToGrid())
 			return 0.0;
 
 		double soldPower = grid.sellToGrid(power);
-		currentPowerSoldToGrid += soldPower;
-		currentCreditFromGrid += grid.getBuyingValue(soldPower);
+		state.add(Column.PowerSoldToGrid, row, soldPower);
+		state.add(Column.CreditFromGrid, row, grid.getBuyingValue(soldPower));
 		return soldPower;
 	}
 
-	private Double buyingFromNeighborsAvailability;
-
-	private double getBuyingFromNeighborsAvailability() {
-		if (buyingFromNeighborsAvailability == null) {
-			double available = 0;
-			for (Object obj : SmartGridBuilder.getNetwork().getAdjacent(this)) {
-				if (obj instanceof Agent) {
-					Agent agent = (Agent) obj;
-					available = agent.getSellingToNeighborsAvailability(this);
-				}
-			}
-			buyingFromNeighborsAvailability = available;
+	private double getBuyingFromNeighborsAvailability(double request) {
+		AdjacencySnapshot adjacency = SmartGridBuilder.getAdjacency();
+		double available = 0;
+		for (int position = adjacency.getFirstNeighbor(networkIndex); position < adjacency.getLastNeighbor(networkIndex); position++) {
+			available += adjacency.getAgent(adjacency.getNeighbor(position)).getAskQuantity();
 		}
 
-		return buyingFromNeighborsAvailability;
-	}
-
-	private double getBuyingFromNeighborsAvailability(double request) {
-		if (request > getBuyingFromNeighborsAvailability())
-			return getBuyingFromNeighborsAvailability();
+		if (request > available)
+			return available;
 		return request;
 	}
 
+	/**
+	 * Matches a bid for the request against the asks of the neighbors, the
+	 * best ask first.
+	 */
 	private double buyFromNeighbors(double request) {
-		ArrayList<Agent> neighbors = new ArrayList<Agent>(SmartGridBuilder.getNetwork().getDegree(this));
-		for (Object obj : SmartGridBuilder.getNetwork().getAdjacent(this)) {
-			if (obj instanceof Agent) {
-				Agent neighbor = (Agent) obj;
-				neighbors.add(neighbor);
-			}
-		}
+		orderBook.collect(this);
 
 		double available = 0;
-		for (int index = neighbors.size() - 1; index >= 0; index--) {
+		for (int index = 0; index < orderBook.size(); index++) {
 			if (request <= 0)
 				break;
-			int random = RandomHelper.nextIntFromTo(0, index);
-			Agent neighbor = neighbors.get(random);
-			if (random != index) {
-				neighbors.set(random, neighbors.get(index));
-				neighbors.set(index, neighbor);
-			}
-
-			double power = neighbor.requestToBuy(this, request);
+			double power = orderBook.getSeller(index).fillAsk(this, request);
 			request -= power;
 			available += power;
 		}
 
-		if (buyingFromNeighborsAvailability != null)
-			buyingFromNeighborsAvailability -= available;
-		currentPowerBoughtFromNeighbors += available;
-		currentDebitToNeighbors = grid.getBaseValue(currentPowerBoughtFromNeighbors);
+		state.add(Column.PowerBoughtFromNeighbors, row, available);
+		state.set(Column.DebitToNeighbors, row, grid.getBaseValue(state.get(Column.PowerBoughtFromNeighbors, row)));
 		return available;
 	}
 
-	private double getSellingToNeighborsAvailability(Agent requester) {
+	private double getSellingToNeighborsAvailability() {
 		if (!reliability.isOperational() ||
-				!SmartGridBuilder.getCanTrade() || 
+				!config.getCanTrade() || 
 				grid.getPredictedBasePrice() <= grid.getMeanBasePrice() ||
 				getCurrentStoredPower() <= getLocalOverAverageDeficit() ||
 				getMeanNeighborhoodRequest() >= getPredictedNeighborhoodRequest() ||
-				currentNeighborhoodRequest >= getNeighborhoodRequestRation())
+				state.get(Column.NeighborhoodRequest, row) >= getNeighborhoodRequestRation())
 		return 0.0;
 		
-		return getStoragePowerAvailability(getNeighborhoodRequestRation() - currentNeighborhoodRequest);
+		return getStoragePowerAvailability(getNeighborhoodRequestRation() - state.get(Column.NeighborhoodRequest, row));
 	}
 
-	private double getSellingToNeighborsAvailability(Agent requester, double power) {
-		if (!reliability.isOperational() ||
-				!SmartGridBuilder.getCanTrade() || 
-				grid.getPredictedBasePrice() <= grid.getMeanBasePrice() ||
-				getCurrentStoredPower() <= getLocalOverAverageDeficit() ||
-				getMeanNeighborhoodRequest() >= getPredictedNeighborhoodRequest() ||
-				currentNeighborhoodRequest >= getNeighborhoodRequestRation())
-		return 0.0;
-		 
-		if (currentNeighborhoodRequest + power > getNeighborhoodRequestRation()) {
-			power = getNeighborhoodRequestRation() - currentNeighborhoodRequest;
-		}
+	double getAskQuantity() {
+		return askQuantity;
+	}
 
-		return getStoragePowerAvailability(power);
+	/**
+	 * Neighbor trades are settled at the base price of the seller's grid.
+	 */
+	double getAskPrice() {
+		return grid.getCurrentBasePrice();
 	}
 
 	private Double neighborhoodRequestRation = null;
@@ -421,189 +408,91 @@ public class Agent implements IDescribable {
 	}
 
 	/**
-	 * The agent check if it has generated a surplus of power, if so the agent
-	 * returns some as much requested power as possible from the surplus Note:
-	 * This agent and the requester should be neighbors
+	 * Fills as much of a neighbor's bid as is left of the agent's ask from its
+	 * storage. The ask was posted before the agents executed, so the storage is
+	 * checked again: the agent only sells what it holds beyond its own
+	 * over-average deficit, as it did when the ask was posted. The request is
+	 * recorded whether or not it is filled. Note: This agent and the requester
+	 * should be neighbors
 	 * 
 	 * @param request
 	 *            The amount of power being requested to be bought
 	 * @return the amount of power bought
 	 */
-	private double requestToBuy(Agent requester, double request) {
-//		System.out.println("+requestToBuy(" + requester.toString() + ", " + request + ")");
-		double power = storage.draw(getSellingToNeighborsAvailability(requester, request));
-		
-		currentNeighborhoodRequest += request;
-		currentPowerSoldToNeighbors += power;
-		currentCreditFromNeighbors = grid.getBaseValue(currentPowerSoldToNeighbors);
+	double fillAsk(Agent requester, double request) {
+		double power = 0;
+		double spare = getCurrentStoredPower() - getLocalOverAverageDeficit();
+		if (askQuantity > 0 && spare > 0) {
+			power = storage.draw(Math.min(Math.min(askQuantity, spare), request));
+		}
+		askQuantity -= power;
+
+		state.add(Column.NeighborhoodRequest, row, request);
+		state.add(Column.PowerSoldToNeighbors, row, power);
+		state.set(Column.CreditFromNeighbors, row, grid.getBaseValue(state.get(Column.PowerSoldToNeighbors, row)));
 		if (power > 0) {
-			RepastEdge<Object> edge = SmartGridBuilder.getNetwork().getEdge(requester, this);
-			if (edge != null) {
-				SmartGridBuilder.getNetwork().removeEdge(edge);
-				SmartGridBuilder.getNetwork().addEdge(this, requester);
+			if (requester.isExecutingConcurrently) {
+				requester.pendingSellerList.add(this);
+				requester.pendingPowerList.add(power);
+			} else {
+				orientTradingEdge(requester, power);
 			}
-			edge = SmartGridBuilder.getNetwork().getEdge(this, requester);
-			edge.setWeight(power);
 		}
-//		System.out.println("-requestToBuy(): " + power);
 		return power;
 	}
 
+	private void orientTradingEdge(Agent requester, double power) {
+		RepastEdge<Object> edge = SmartGridBuilder.getNetwork().getEdge(requester, this);
+		if (edge != null) {
+			SmartGridBuilder.getNetwork().removeEdge(edge);
+			SmartGridBuilder.getNetwork().addEdge(this, requester);
+		}
+		edge = SmartGridBuilder.getNetwork().getEdge(this, requester);
+		edge.setWeight(power);
+	}
+
 	// End of interaction method segment
 
 	/*
 	 * Start of computations section
 	 */
-	private Double underAverageDeficit = null;
-
-	private double getUnderAverageDeficit() {
-		if (underAverageDeficit == null) {
-			underAverageDeficit = getUnderBaselineDeficit(getMeanDeficit());
+	private ForesightProfile getForesightProfile() {
+		if (!foresightProfile.isValid()) {
+			foresightProfile.update(getDeficit(), deficitWindow, neighborhoodRequestWindow);
 		}
-		return underAverageDeficit;
+		return foresightProfile;
 	}
 
-	private double getUnderBaselineDeficit(double baseline) {
-		double underBaselineDeficit = 0.0;
-		for (int future = 0; future < foresight; future++) {
-			underBaselineDeficit += Clamp.getDefault().adjust(baseline - getPredictedDeficit(future));
-		}
-		return underBaselineDeficit;
+	private double getUnderAverageDeficit() {
+		return getForesightProfile().getUnderAverageDeficit();
 	}
 
-	private Double localUnderAverageDeficit = null;
-
 	private double getLocalUnderAverageDeficit() {
-		if (localUnderAverageDeficit == null) {
-			localUnderAverageDeficit = getLocalUnderBaselineDeficit(getMeanDeficit());
-		}
-		return localUnderAverageDeficit;
+		return getForesightProfile().getLocalUnderAverageDeficit();
 	}
 
-	private double getLocalUnderBaselineDeficit(double baseline) {
-		double underBaselineDeficit = 0.0;
-		int future = 0;
-		while (getPredictedDeficit(future) < baseline && future < foresight) {
-			underBaselineDeficit += baseline - getPredictedDeficit(future);
-			future++;
-		}
-		return underBaselineDeficit;
-	}
-
-	private Double dynamicUnderAverageDeficit = null;
-
 	private double getDynamicUnderAverageDeficit() {
-		if (dynamicUnderAverageDeficit == null) {
-			dynamicUnderAverageDeficit = getDynamicUnderBaselineDeficit(getMeanNeighborhoodRequest());
-		}
-		return dynamicUnderAverageDeficit;
+		return getForesightProfile().getDynamicUnderAverageDeficit();
 	}
 
-	private double getDynamicUnderBaselineDeficit(double baseline) {
-		double underBaselineDeficit = 0.0;
-		double maxUnderBaselineDeficit = Double.NEGATIVE_INFINITY;
-		for (int future = 0; future < foresight; future++) {
-			underBaselineDeficit += baseline - getPredictedDeficit(future);
-			if (underBaselineDeficit > maxUnderBaselineDeficit) {
-				maxUnderBaselineDeficit = underBaselineDeficit;
-			}
-		}
-		return maxUnderBaselineDeficit;
-	}
-
-	private Double localUnderAverageRequest = null;
-
 	private double getLocalUnderAverageRequest() {
-		if (localUnderAverageRequest == null) {
-			localUnderAverageRequest = getLocalUnderBaselineRequest(getMeanNeighborhoodRequest());
-		}
-		return localUnderAverageRequest;
-	}
-
-	private double getLocalUnderBaselineRequest(double baseline) {
-		double underBaselineRequest = 0.0;
-		int future = 0;
-		while (getPredictedNeighborhoodRequest(future) < baseline && future < foresight) {
-			underBaselineRequest += baseline - getPredictedNeighborhoodRequest(future);
-			future++;
-		}
-		return underBaselineRequest;
+		return getForesightProfile().getLocalUnderAverageRequest();
 	}
 
-	private Double overAverageDeficit = null;
-
 	private double getOverAverageDeficit() {
-		if (overAverageDeficit == null) {
-			overAverageDeficit = getOverBaselineDeficit(getMeanDeficit());
-		}
-		return overAverageDeficit;
-	}
-
-	private double getOverBaselineDeficit(double baseline) {
-		double overBaselineDeficit = 0.0;
-		for (int future = 0; future < foresight; future++) {
-			overBaselineDeficit += Clamp.getDefault().adjust(baseline - getPredictedDeficit(future));
-		}
-		return overBaselineDeficit;
+		return getForesightProfile().getOverAverageDeficit();
 	}
 
-	private Double localOverAverageDeficit = null;
-
 	private double getLocalOverAverageDeficit() {
-		if (localOverAverageDeficit == null) {
-			localOverAverageDeficit = getLocalOverBaselineDeficit(getMeanDeficit());
-		}
-		return localOverAverageDeficit;
+		return getForesightProfile().getLocalOverAverageDeficit();
 	}
 
-	private double getLocalOverBaselineDeficit(double baseline) {
-		double overBaselineDeficit = 0.0;
-		int future = 0;
-		while (getPredictedDeficit(future) > baseline && future < foresight) {
-			overBaselineDeficit += getPredictedDeficit(future) - baseline;
-			future++;
-		}
-		return overBaselineDeficit;
-	}
-
-	private Double dynamicOverAverageDeficit = null;
-
 	private double getDynamicOverAverageDeficit() {
-		if (dynamicOverAverageDeficit == null) {
-			dynamicOverAverageDeficit = getDynamicOverBaselineDeficit(getMeanDeficit());
-		}
-		return dynamicOverAverageDeficit;
+		return getForesightProfile().getDynamicOverAverageDeficit();
 	}
 
-	private double getDynamicOverBaselineDeficit(double baseline) {
-		double overBaselineDeficit = 0.0;
-		double maxOverBaselineDeficit = Double.NEGATIVE_INFINITY;
-		for (int future = 0; future < foresight; future++) {
-			overBaselineDeficit += getPredictedDeficit(future) - baseline;
-			if (overBaselineDeficit > maxOverBaselineDeficit) {
-				maxOverBaselineDeficit = overBaselineDeficit;
-			}
-		}
-		return maxOverBaselineDeficit;
-	}
-
-	private Double localOverAverageRequest = null;
-
 	private double getLocalOverAverageRequest() {
-		if (localOverAverageRequest == null) {
-			localOverAverageRequest = getLocalOverBaselineRequest(getMeanNeighborhoodRequest());
-		}
-		return localOverAverageRequest;
-	}
-
-	private double getLocalOverBaselineRequest(double baseline) {
-		double overBaselineRequest = 0.0;
-		int future = 0;
-		while (getPredictedNeighborhoodRequest(future) > baseline && future < foresight) {
-			overBaselineRequest += getPredictedNeighborhoodRequest(future) - baseline;
-			future++;
-		}
-		return overBaselineRequest;
+		return getForesightProfile().getLocalOverAverageRequest();
 	}
 
 	// end of computations section
@@ -675,7 +564,7 @@ public class Agent implements IDescribable {
 		} else {
 			usedPower = getCurrentUnsatisfiedLoad();
 		}
-		currentlySatisfiedLoad += usedPower;
+		state.add(Column.SatisfiedLoad, row, usedPower);
 		return usedPower;
 	}
 
@@ -691,14 +580,14 @@ public class Agent implements IDescribable {
 		} else {
 			usedPower = getCurrentSuspendedLoad();
 		}
-		currentRemovedSuspension += usedPower;
+		state.add(Column.RemovedSuspension, row, usedPower);
 		return usedPower;
 	}
 
 	private double forcefullySuspendLoad(double power) {
 		double load = satisfyLoad(power);
-		currentAddedSuspension += load;
-		currentForcefullySuspendedLoad += load;
+		state.add(Column.AddedSuspension, row, load);
+		state.add(Column.ForcefullySuspendedLoad, row, load);
 		return load;
 	}
 
@@ -708,13 +597,13 @@ public class Agent implements IDescribable {
 	 * @return the amount of power suspended
 	 */
 	private double suspendLoad(double power) {
-		if (SmartGridBuilder.getCanSuspendLoad()) {
+		if (config.getCanSuspendLoad()) {
 			if (getCurrentRemainingSuspendableLoad() < power) {
 				power = getCurrentRemainingSuspendableLoad();
 			}
 
 			double load = satisfyLoad(power);
-			currentAddedSuspension += load;
+			state.add(Column.AddedSuspension, row, load);
 			return load;
 		} else {
 			return 0;
@@ -727,7 +616,7 @@ public class Agent implements IDescribable {
 	 * @return the amount of power dumped
 	 */
 	private double dumpPower(double power) {
-		currentDumpedPower += power;
+		state.add(Column.DumpedPower, row, power);
 		return power;
 	}
 
@@ -752,7 +641,7 @@ public class Agent implements IDescribable {
 		if (power > getCurrentRemainingGeneration()) {
 			usedPower = getCurrentRemainingGeneration();
 		}
-		currentlySpentGeneration += usedPower;
+		state.add(Column.SpentGeneration, row, usedPower);
 		return usedPower;
 	}
 
@@ -780,11 +669,11 @@ public class Agent implements IDescribable {
 	}
 
 	private double getCurrentUnsatisfiedLoad() {
-		return loadModel.getCurrentValue() - currentlySatisfiedLoad;
+		return loadModel.getCurrentValue() - state.get(Column.SatisfiedLoad, row);
 	}
 
 	private double getCurrentRemainingGeneration() {
-		return generationModel.getCurrentValue() - currentlySpentGeneration;
+		return generationModel.getCurrentValue() - state.get(Column.SpentGeneration, row);
 	}
 
 	private double getCurrentDeficit() {
@@ -792,7 +681,7 @@ public class Agent implements IDescribable {
 	}
 
 	private double getCurrentSuspendedLoad() {
-		return suspendedLoad + getCurrentChangeInSuspention();
+		return state.get(Column.SuspendedLoad, row) + getCurrentChangeInSuspention();
 	}
 
 	// End of value methods section
@@ -802,6 +691,25 @@ public class Agent implements IDescribable {
 		return group.getName() + "-" + id;
 	}
 
+	/**
+	 * @return the number of ids given out so far
+	 */
+	static int getIdCount() {
+		return population;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public int getNetworkIndex() {
+		return networkIndex;
+	}
+
+	public void setNetworkIndex(int networkIndex) {
+		this.networkIndex = networkIndex;
+	}
+
 	@Override
 	public String description() {
 		return this.description(0);
@@ -865,7 +773,7 @@ public class Agent implements IDescribable {
 	}
 
 	public double getSuspendableLoad() {
-		if (SmartGridBuilder.getCanSuspendLoad())
+		if (config.getCanSuspendLoad())
 			return suspendableModel.getCurrentValue() * getLoad();
 		return 0;
 	}
@@ -875,31 +783,31 @@ public class Agent implements IDescribable {
 	}
 
 	public double getCurrentAddedSuspension() {
-		return currentAddedSuspension;
+		return state.get(Column.AddedSuspension, row);
 	}
 
 	public double getCurrentRemovedSuspension() {
-		return currentRemovedSuspension;
+		return state.get(Column.RemovedSuspension, row);
 	}
 
 	public double getCurrentChangeInSuspention() {
-		return currentAddedSuspension - currentRemovedSuspension;
+		return state.get(Column.AddedSuspension, row) - state.get(Column.RemovedSuspension, row);
 	}
 
 	public double getSuspendedLoad() {
-		return suspendedLoad;
+		return state.get(Column.SuspendedLoad, row);
 	}
 
 	public double getCurrentForcefullySuspendedLoad() {
-		return currentForcefullySuspendedLoad;
+		return state.get(Column.ForcefullySuspendedLoad, row);
 	}
 	
 	public double getUnsatisfiedLoadCount() {
-		return currentForcefullySuspendedLoad > 0 ? 1 : 0; 
+		return state.get(Column.ForcefullySuspendedLoad, row) > 0 ? 1 : 0; 
 	}
 
 	public double getCurrentDumpedPower() {
-		return currentDumpedPower;
+		return state.get(Column.DumpedPower, row);
 	}
 
 	// end of internal state
@@ -908,19 +816,19 @@ public class Agent implements IDescribable {
 	 * Power accounts
 	 */
 	public double getCurrentPowerBoughtFromGrid() {
-		return currentPowerBoughtFromGrid;
+		return state.get(Column.PowerBoughtFromGrid, row);
 	}
 
 	public double getCurrentPowerBoughtFromNeighbors() {
-		return currentPowerBoughtFromNeighbors;
+		return state.get(Column.PowerBoughtFromNeighbors, row);
 	}
 
 	public double getCurrentPowerSoldToGrid() {
-		return currentPowerSoldToGrid;
+		return state.get(Column.PowerSoldToGrid, row);
 	}
 
 	public double getCurrentPowerSoldToNeighbors() {
-		return currentPowerSoldToNeighbors;
+		return state.get(Column.PowerSoldToNeighbors, row);
 	}
 
 	// end of power accounts
@@ -929,27 +837,27 @@ public class Agent implements IDescribable {
 	 * Monetary accounts
 	 */
 	public double getCurrentDebitToGrid() {
-		return currentDebitToGrid;
+		return state.get(Column.DebitToGrid, row);
 	}
 
 	public double getCurrentDebitToNeighbors() {
-		return currentDebitToNeighbors;
+		return state.get(Column.DebitToNeighbors, row);
 	}
 
 	public double getCurrentCreditFromGrid() {
-		return currentCreditFromGrid;
+		return state.get(Column.CreditFromGrid, row);
 	}
 
 	public double getCurrentCreditFromNeighbors() {
-		return currentCreditFromNeighbors;
+		return state.get(Column.CreditFromNeighbors, row);
 	}
 
 	public double getCurrentProfitFromNeigbors() {
-		return currentCreditFromNeighbors - currentDebitToNeighbors;
+		return state.get(Column.CreditFromNeighbors, row) - state.get(Column.DebitToNeighbors, row);
 	}
 
 	public double getCurrentProfitFromGrid() {
-		return currentCreditFromGrid - currentDebitToGrid;
+		return state.get(Column.CreditFromGrid, row) - state.get(Column.DebitToGrid, row);
 	}
 
 	public double getCurrentProfit() {
@@ -962,11 +870,11 @@ public class Agent implements IDescribable {
 	 * Start of cost functions
 	 */
 	public double getCurrentGenerationCost() {
-		return currentGenerationCost;
+		return state.get(Column.GenerationCost, row);
 	}
 
 	public double getCurrentStorageCost() {
-		return currentStorageCost;
+		return state.get(Column.StorageCost, row);
 	}
 
 	// End of costs
@@ -996,7 +904,7 @@ public class Agent implements IDescribable {
 	}
 
 	public double getCurrentDemand() {
-		return currentPowerBoughtFromGrid - currentPowerSoldToGrid;
+		return state.get(Column.PowerBoughtFromGrid, row) - state.get(Column.PowerSoldToGrid, row);
 	}
 
 	// end of demand
@@ -1005,7 +913,7 @@ public class Agent implements IDescribable {
 	 * Neighborhood State
 	 */
 	public double getCurrentNeighborhoodRequest() {
-		return currentNeighborhoodRequest;
+		return state.get(Column.NeighborhoodRequest, row);
 	}
 	
 	public String getCurrentNeighborhoodRequestLabel() {
@@ -1020,10 +928,6 @@ public class Agent implements IDescribable {
 		return "Predicted Neighborhood Request of " + group.toString();
 	}
 
-	private double getPredictedNeighborhoodRequest(int foresight) {
-		return neighborhoodRequestWindow.getPeriodMean(foresight);
-	}
-
 	public double getMeanNeighborhoodRequest() {
 		return neighborhoodRequestWindow.getWindowMean();
 	}
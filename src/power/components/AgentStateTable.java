@@ -0,0 +1,113 @@
+package power.components;
+
+import java.util.Arrays;
+
+/**
+ * The mutable state of the agents of one AgentGenerator, kept in one
+ * contiguous array per quantity rather than in the agents themselves. Every
+ * agent owns one row of the table, so sums over the population stream through
+ * a single array, and the per-tick reset is a fill of the per-tick columns.
+ */
+public class AgentStateTable {
+	private static final int INITIAL_CAPACITY = 16;
+
+	public enum Column {
+		SatisfiedLoad(true),
+		SpentGeneration(true),
+		SuspendedLoad(false),
+		AddedSuspension(true),
+		RemovedSuspension(true),
+		ForcefullySuspendedLoad(true),
+		PowerBoughtFromGrid(true),
+		PowerBoughtFromNeighbors(true),
+		PowerSoldToGrid(true),
+		PowerSoldToNeighbors(true),
+		NeighborhoodRequest(true),
+		DumpedPower(true),
+		DebitToGrid(true),
+		DebitToNeighbors(true),
+		CreditFromGrid(true),
+		CreditFromNeighbors(true),
+		StorageCost(true),
+		GenerationCost(true);
+
+		private final boolean isPerTick;
+
+		private Column(boolean isPerTick) {
+			this.isPerTick = isPerTick;
+		}
+
+		public boolean isPerTick() {
+			return isPerTick;
+		}
+	}
+
+	private static final Column[] COLUMNS = Column.values();
+
+	private final double[][] columns;
+	private int size;
+
+	public AgentStateTable() {
+		columns = new double[COLUMNS.length][INITIAL_CAPACITY];
+		size = 0;
+	}
+
+	/**
+	 * @return the index of the new row, all of whose values are zero
+	 */
+	public int addRow() {
+		if (size == columns[0].length) {
+			for (int column = 0; column < columns.length; column++) {
+				columns[column] = Arrays.copyOf(columns[column], size * 2);
+			}
+		}
+		return size++;
+	}
+
+	/**
+	 * Removes the last row, which agents are removed in the reverse order of
+	 * their creation.
+	 */
+	public void removeRow() {
+		size--;
+		for (int column = 0; column < columns.length; column++) {
+			columns[column][size] = 0;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Zeroes the per-tick columns of every row.
+	 */
+	public void reset() {
+		for (int column = 0; column < columns.length; column++) {
+			if (COLUMNS[column].isPerTick()) {
+				Arrays.fill(columns[column], 0, size, 0);
+			}
+		}
+	}
+
+	public double get(Column column, int row) {
+		return columns[column.ordinal()][row];
+	}
+
+	public void set(Column column, int row, double value) {
+		columns[column.ordinal()][row] = value;
+	}
+
+	public void add(Column column, int row, double value) {
+		columns[column.ordinal()][row] += value;
+	}
+
+	public double sum(Column column) {
+		double[] values = columns[column.ordinal()];
+		double sum = 0;
+		for (int row = 0; row < size; row++) {
+			sum += values[row];
+		}
+		return sum;
+	}
+}
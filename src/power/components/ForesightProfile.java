@@ -0,0 +1,155 @@
+package power.components;
+
+import power.helpers.RunningMean;
+import power.tools.Clamp;
+
+/**
+ * The deficits and neighborhood requests an agent predicts over its foresight
+ * horizon, together with the statistics of those predictions against the mean
+ * deficit and request. The predictions are taken from the windows once per
+ * tick and every statistic is computed in a single pass over them.
+ */
+public class ForesightProfile {
+	private final double[] deficitList;
+	private final double[] requestList;
+	private boolean isValid;
+
+	private double underAverageDeficit;
+	private double localUnderAverageDeficit;
+	private double dynamicUnderAverageDeficit;
+	private double localUnderAverageRequest;
+	private double overAverageDeficit;
+	private double localOverAverageDeficit;
+	private double dynamicOverAverageDeficit;
+	private double localOverAverageRequest;
+
+	public ForesightProfile(int foresight) {
+		deficitList = new double[foresight];
+		requestList = new double[foresight];
+		isValid = false;
+	}
+
+	public void invalidate() {
+		isValid = false;
+	}
+
+	public boolean isValid() {
+		return isValid;
+	}
+
+	/**
+	 * @param deficit
+	 *            the current deficit, which is the prediction for the present
+	 */
+	public void update(double deficit, RunningMean deficitWindow, RunningMean requestWindow) {
+		int foresight = deficitList.length;
+		for (int future = 0; future < foresight; future++) {
+			deficitList[future] = future == 0 ? deficit : deficitWindow.getPeriodMean(future);
+			requestList[future] = requestWindow.getPeriodMean(future);
+		}
+
+		double meanDeficit = deficitWindow.getWindowMean();
+		double meanRequest = requestWindow.getWindowMean();
+
+		underAverageDeficit = 0;
+		localUnderAverageDeficit = 0;
+		localOverAverageDeficit = 0;
+		localUnderAverageRequest = 0;
+		localOverAverageRequest = 0;
+		dynamicUnderAverageDeficit = Double.NEGATIVE_INFINITY;
+		dynamicOverAverageDeficit = Double.NEGATIVE_INFINITY;
+
+		// the local statistics only run while the predictions stay on one side
+		boolean isLocallyUnderDeficit = true;
+		boolean isLocallyOverDeficit = true;
+		boolean isLocallyUnderRequest = true;
+		boolean isLocallyOverRequest = true;
+		double dynamicUnderSum = 0;
+		double dynamicOverSum = 0;
+		for (int future = 0; future < foresight; future++) {
+			double predictedDeficit = deficitList[future];
+			double predictedRequest = requestList[future];
+
+			underAverageDeficit += Clamp.getDefault().adjust(meanDeficit - predictedDeficit);
+
+			if (isLocallyUnderDeficit && predictedDeficit < meanDeficit) {
+				localUnderAverageDeficit += meanDeficit - predictedDeficit;
+			} else {
+				isLocallyUnderDeficit = false;
+			}
+			if (isLocallyOverDeficit && predictedDeficit > meanDeficit) {
+				localOverAverageDeficit += predictedDeficit - meanDeficit;
+			} else {
+				isLocallyOverDeficit = false;
+			}
+			if (isLocallyUnderRequest && predictedRequest < meanRequest) {
+				localUnderAverageRequest += meanRequest - predictedRequest;
+			} else {
+				isLocallyUnderRequest = false;
+			}
+			if (isLocallyOverRequest && predictedRequest > meanRequest) {
+				localOverAverageRequest += predictedRequest - meanRequest;
+			} else {
+				isLocallyOverRequest = false;
+			}
+
+			// as before, the dynamic under deficit is taken against the mean request
+			dynamicUnderSum += meanRequest - predictedDeficit;
+			if (dynamicUnderSum > dynamicUnderAverageDeficit) {
+				dynamicUnderAverageDeficit = dynamicUnderSum;
+			}
+			dynamicOverSum += predictedDeficit - meanDeficit;
+			if (dynamicOverSum > dynamicOverAverageDeficit) {
+				dynamicOverAverageDeficit = dynamicOverSum;
+			}
+		}
+		// as before, the over average deficit is clamped the same way as the under
+		overAverageDeficit = underAverageDeficit;
+
+		isValid = true;
+	}
+
+	public int getForesight() {
+		return deficitList.length;
+	}
+
+	public double getPredictedDeficit(int future) {
+		return deficitList[future];
+	}
+
+	public double getPredictedRequest(int future) {
+		return requestList[future];
+	}
+
+	public double getUnderAverageDeficit() {
+		return underAverageDeficit;
+	}
+
+	public double getLocalUnderAverageDeficit() {
+		return localUnderAverageDeficit;
+	}
+
+	public double getDynamicUnderAverageDeficit() {
+		return dynamicUnderAverageDeficit;
+	}
+
+	public double getLocalUnderAverageRequest() {
+		return localUnderAverageRequest;
+	}
+
+	public double getOverAverageDeficit() {
+		return overAverageDeficit;
+	}
+
+	public double getLocalOverAverageDeficit() {
+		return localOverAverageDeficit;
+	}
+
+	public double getDynamicOverAverageDeficit() {
+		return dynamicOverAverageDeficit;
+	}
+
+	public double getLocalOverAverageRequest() {
+		return localOverAverageRequest;
+	}
+}
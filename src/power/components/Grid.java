@@ -1,13 +1,15 @@
 package power.components;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.BitSet;
 
 import org.w3c.dom.Node;
 
+import power.SimulationConfig;
 import power.SmartGridBuilder;
 import power.auction.Auctioneer;
 import power.auction.Market;
+import power.auction.ZonalAuctioneer;
 import power.components.generators.AgentGenerator;
 import power.distributions.IRandomDistribution;
 import power.helpers.AdjustedRunningMax;
@@ -18,7 +20,7 @@ import power.tools.Absolute;
 import power.tools.Amplify;
 import power.tools.IDescribable;
 import repast.simphony.engine.schedule.ScheduledMethod;
-import repast.simphony.essentials.RepastEssentials;
+import repast.simphony.random.RandomHelper;
 
 /**
  * @author That Note: Make sure the RandomModel being used generates valid
@@ -27,13 +29,15 @@ import repast.simphony.essentials.RepastEssentials;
 public abstract class Grid implements IDescribable {
 
 	public enum GridType {
-		Market, Auctioneer
+		Market, Auctioneer, ZonalAuctioneer
 	}
 
 	// simulation members
+	protected final SimulationConfig config;
 	private final IReliability reliability;
 	private final IRandomDistribution blackoutRadius;
-	private final LinkedList<Agent> blackoutArea;
+	// the outage of the current blackout, or -1 when there is none
+	private int outage;
 
 	private final double buyingPriceAdjustment;
 	private final double sellingPriceAdjustment;
@@ -57,6 +61,9 @@ public abstract class Grid implements IDescribable {
 	private double currentDebit;
 	private double currentCredit;
 
+	// the ledger of the current worker while agents trade concurrently
+	private final ThreadLocal<GridLedger> ledger = new ThreadLocal<GridLedger>();
+
 	public static Grid create(Node xml) {
 		GridType gridType = XmlTools.getAttributeValue(xml, XmlTools.XmlAttribute.type, GridType.class);
 		if (gridType == null) {
@@ -65,6 +72,8 @@ public abstract class Grid implements IDescribable {
 			switch (gridType) {
 			case Market:
 				return Market.create(xml);
+			case ZonalAuctioneer:
+				return ZonalAuctioneer.create(xml);
 			case Auctioneer:
 			default:
 				return Auctioneer.create(xml);
@@ -72,7 +81,8 @@ public abstract class Grid implements IDescribable {
 		}
 	}
 
-	public Grid(IRandomDistribution blackoutRadius, IReliability reliability, double priceAdjustment) {
+	public Grid(SimulationConfig config, IRandomDistribution blackoutRadius, IReliability reliability, double priceAdjustment) {
+		this.config = config;
 
 		if (reliability == null || blackoutRadius == null) {
 			this.reliability = BlankReliability.getBlankReliability();
@@ -80,14 +90,14 @@ public abstract class Grid implements IDescribable {
 			this.reliability = reliability;
 		}
 		this.blackoutRadius = blackoutRadius;
-		this.blackoutArea = new LinkedList<Agent>();
+		this.outage = -1;
 
 		this.buyingPriceAdjustment = 1.0 - priceAdjustment;
 		this.sellingPriceAdjustment = 1.0 + priceAdjustment;
 
-		demandWindow = new AdjustedRunningMax(Absolute.getSingleton());
-		outflowWindow = new RunningMean();
-		priceWindow = new RunningMean();
+		demandWindow = new AdjustedRunningMax(config, Absolute.getSingleton());
+		outflowWindow = new RunningMean(config);
+		priceWindow = new RunningMean(config);
 	}
 
 	/*
@@ -193,6 +203,12 @@ public abstract class Grid implements IDescribable {
 	 */
 	public double buyFromGrid(double power) {
 		double soldPower = power;
+		GridLedger ledger = this.ledger.get();
+		if (ledger != null) {
+			ledger.soldPower += soldPower;
+			ledger.credit += getSellingValue(soldPower);
+			return soldPower;
+		}
 		currentSoldPower += soldPower;
 		// System.out.println("grid: " + currentBoughtPower + ", " +
 		// currentSoldPower);
@@ -205,18 +221,29 @@ public abstract class Grid implements IDescribable {
 	}
 
 	public double getSellToGridAvailability(double power) {
+		GridLedger ledger = this.ledger.get();
+		if (ledger != null) {
+			if (ledger.boughtPower >= ledger.buyBackQuota) {
+				return 0.0;
+			}
+			if (ledger.boughtPower + power > ledger.buyBackQuota) {
+				power = ledger.buyBackQuota - ledger.boughtPower;
+			}
+			return power;
+		}
+
 		// System.err.println("+getSellToGridAvailability: power=" + power);
 		// System.err.println("currentBought: " + currentBoughtPower);
 		// System.err.println("outflow: " + getPredictedOutflow());
 		// System.err.println("buyback: " +
 		// SmartGridBuilder.getHourlyGridBuyBack());
 
-		if (currentBoughtPower >= SmartGridBuilder.getHourlyGridBuyBack() || currentBoughtPower >= getPredictedOutflow()) {
+		if (currentBoughtPower >= config.getHourlyGridBuyBack() || currentBoughtPower >= getPredictedOutflow()) {
 			return 0.0;
 		}
 
-		if (currentBoughtPower + power > SmartGridBuilder.getHourlyGridBuyBack()) {
-			power = SmartGridBuilder.getHourlyGridBuyBack() - currentBoughtPower;
+		if (currentBoughtPower + power > config.getHourlyGridBuyBack()) {
+			power = config.getHourlyGridBuyBack() - currentBoughtPower;
 		}
 
 		if (currentBoughtPower + power > getPredictedOutflow()) {
@@ -234,32 +261,91 @@ public abstract class Grid implements IDescribable {
 	 * @return The amount of money provided for the power
 	 */
 	public double sellToGrid(double power) {
+		GridLedger ledger = this.ledger.get();
+		if (ledger != null) {
+			double boughtPower = getSellToGridAvailability(power);
+			ledger.boughtPower += boughtPower;
+			ledger.debit += getBuyingValue(boughtPower);
+			return boughtPower;
+		}
 		double boughtPower = getSellToGridAvailability(power);
 		currentBoughtPower += boughtPower;
 		currentDebit += getBuyingValue(boughtPower);
 		return boughtPower;
 	}
 
+	/**
+	 * Routes the transactions of the calling thread into the ledger until
+	 * {@link #closeLedger()} is called. The buy back of the grid is limited, so
+	 * the ledger is given its share of the buy back left when it is opened, and
+	 * the power bought back through it is limited by that share alone. The
+	 * grant of an agent then does not depend on the order in which the workers
+	 * run, though a worker may be refused power another one would have taken.
+	 */
+	public void openLedger(GridLedger ledger) {
+		ledger.clear();
+		ledger.buyBackQuota = getRemainingBuyBack() * ledger.getBuyBackShare();
+		this.ledger.set(ledger);
+	}
+
+	private double getRemainingBuyBack() {
+		double limit = Math.min(config.getHourlyGridBuyBack(), getPredictedOutflow());
+		return Math.max(limit - currentBoughtPower, 0);
+	}
+
+	public void closeLedger() {
+		this.ledger.remove();
+	}
+
+	/**
+	 * Adds a closed ledger to the grid's accounts. Merging ledgers in a fixed
+	 * order keeps the sums independent of the thread scheduling.
+	 */
+	public void mergeLedger(GridLedger ledger) {
+		currentSoldPower += ledger.soldPower;
+		currentBoughtPower += ledger.boughtPower;
+		currentCredit += ledger.credit;
+		currentDebit += ledger.debit;
+		ledger.clear();
+	}
+
+	/**
+	 * Adds the power and money a zone of the grid exchanged this tick to the
+	 * grid's accounts.
+	 */
+	protected void mergeZone(Grid zone) {
+		currentSoldPower += zone.currentSoldPower;
+		currentBoughtPower += zone.currentBoughtPower;
+		currentCredit += zone.currentCredit;
+		currentDebit += zone.currentDebit;
+	}
+
+	/**
+	 * @return the grid the agents of the named generator trade with, which is
+	 *         the grid itself unless it is split into zones
+	 */
+	public Grid getZone(String agentGeneratorName) {
+		return this;
+	}
+
 	// end of transaction methods
 
 	@ScheduledMethod(start = 0, interval = 1, priority = 3)
 	public void initialize() {
-		if (!blackoutArea.isEmpty() && reliability.isOperational()) {
+		if (outage != -1 && reliability.isOperational()) {
 			// System.out.println("-Exiting Blackout: " +
 			// RepastEssentials.GetTickCount());
 			// System.out.println();
 
 			// end blackout
-			for (Agent agent : blackoutArea) {
-				agent.reconnectToGrid();
-			}
-			blackoutArea.clear();
-		} else if (blackoutArea.isEmpty() && !reliability.isOperational()) {
+			SmartGridBuilder.getOutages().endOutage(outage);
+			outage = -1;
+		} else if (outage == -1 && !reliability.isOperational()) {
 			// System.out.println("+Entering Blackout: " +
 			// RepastEssentials.GetTickCount());
 			startBlackout();
-			if (SmartGridBuilder.getPauseOnBlackout()) {
-				RepastEssentials.PauseSimulationRun();
+			if (config.getPauseOnBlackout()) {
+				SmartGridBuilder.pauseRun();
 			}
 			// for (Agent agent : blackoutArea) {
 			// System.out.print(agent.toString() + ",");
@@ -279,39 +365,31 @@ public abstract class Grid implements IDescribable {
 	}
 
 	private void startBlackout() {
-		for (Object obj1 : SmartGridBuilder.getContext().getRandomObjects(Agent.class, 1)) {
-			LinkedList<Agent> innerNeighbors = new LinkedList<Agent>();
-			LinkedList<Agent> outerNeighbors = new LinkedList<Agent>();
-
-			Agent agent = (Agent) obj1;
-			agent.disconnectFromGrid();
-			blackoutArea.add(agent);
-			innerNeighbors.add(agent);
-
-			int radius = blackoutRadius.nextInt();
-			for (int current = 0; current < radius; current++) {
-				while (!innerNeighbors.isEmpty()) {
-					agent = innerNeighbors.removeFirst();
-					for (Object obj2 : SmartGridBuilder.getNetwork().getAdjacent(agent)) {
-						if (obj2.getClass() == Agent.class) {
-							Agent neighbor = (Agent) obj2;
-							if (neighbor.isConnectedToGrid()) {
-								neighbor.disconnectFromGrid();
-								blackoutArea.add(neighbor);
-								outerNeighbors.add(neighbor);
-							}
-						}
-					}
-				}
-				if (outerNeighbors.isEmpty()) {
-					return;
-				} else {
-					LinkedList<Agent> neighbors = innerNeighbors;
-					innerNeighbors = outerNeighbors;
-					outerNeighbors = neighbors;
+		// gives the agents added since the last snapshot their indices
+		SmartGridBuilder.getAdjacency();
+		if (this == SmartGridBuilder.getGrid()) {
+			for (Object obj : SmartGridBuilder.getContext().getRandomObjects(Agent.class, 1)) {
+				Agent agent = (Agent) obj;
+				outage = SmartGridBuilder.getOutages().startOutage(agent.getNetworkIndex(), blackoutRadius.nextInt());
+			}
+			return;
+		}
+
+		// a zone only blacks out its own agents, starting at a random one
+		BitSet area = new BitSet();
+		ArrayList<Agent> agentList = new ArrayList<Agent>();
+		for (AgentGenerator agentGen : SmartGridBuilder.getAgentGeneratorMap().values()) {
+			if (agentGen.getGrid() == this) {
+				for (Agent agent : agentGen.getAgents()) {
+					area.set(agent.getNetworkIndex());
+					agentList.add(agent);
 				}
 			}
 		}
+		if (!agentList.isEmpty()) {
+			Agent origin = agentList.get(RandomHelper.nextIntFromTo(0, agentList.size() - 1));
+			outage = SmartGridBuilder.getOutages().startOutage(origin.getNetworkIndex(), blackoutRadius.nextInt(), area);
+		}
 	}
 
 	@ScheduledMethod(start = 0, interval = 1, priority = -3)
@@ -401,7 +479,7 @@ public abstract class Grid implements IDescribable {
 	}
 
 	public double getDemandSTD() {
-		return demandWindow.recomputeStandardDev((int) SmartGridBuilder.getPeriod());
+		return demandWindow.getRecentStandardDev();
 	}
 
 	public String getDemandSTDLabel() {
@@ -409,7 +487,7 @@ public abstract class Grid implements IDescribable {
 	}
 
 	public double getDemandVariance() {
-		return demandWindow.recomputeVariance((int) SmartGridBuilder.getPeriod());
+		return demandWindow.getRecentVariance();
 	}
 
 	public String getDemandVarianceLabel() {
@@ -417,7 +495,7 @@ public abstract class Grid implements IDescribable {
 	}
 
 	public double getDemandCV() {
-		return demandWindow.recomputeStandardDev((int) SmartGridBuilder.getPeriod()) / Math.abs(demandWindow.getRecentMean());
+		return demandWindow.getRecentStandardDev() / Math.abs(demandWindow.getRecentMean());
 	}
 
 	public String getDemandCVLabel() {
@@ -461,7 +539,8 @@ public abstract class Grid implements IDescribable {
 	}
 
 	public double getPowerDemandSTD() {
-		return demandWindow.recomputeStandardDev(SmartGridBuilder.getPeriod(), Amplify.getHandyInstance(1.0 / SmartGridBuilder.getAgentPopulation()));
+		// amplifying the demand amplifies its deviation by the same factor
+		return Amplify.getHandyInstance(1.0 / SmartGridBuilder.getAgentPopulation()).adjust(demandWindow.getRecentStandardDev());
 	}
 
 	public String getPowerDemandSTDLabel() {
@@ -0,0 +1,49 @@
+package power.components;
+
+/**
+ * Accumulates the grid's per-tick accounts of a single worker while agents
+ * trade concurrently. The ledgers are merged into the Grid once the workers
+ * have finished, see {@link Grid#openLedger(GridLedger)}.
+ */
+public class GridLedger {
+	double soldPower;
+	double boughtPower;
+	double credit;
+	double debit;
+
+	// the part of the grid buy back left when the ledger is opened which its
+	// worker may use, and the buy back this gives it
+	private double buyBackShare = 1;
+	double buyBackQuota;
+
+	public void clear() {
+		soldPower = 0;
+		boughtPower = 0;
+		credit = 0;
+		debit = 0;
+	}
+
+	public void setBuyBackShare(double buyBackShare) {
+		this.buyBackShare = buyBackShare;
+	}
+
+	public double getBuyBackShare() {
+		return buyBackShare;
+	}
+
+	public double getSoldPower() {
+		return soldPower;
+	}
+
+	public double getBoughtPower() {
+		return boughtPower;
+	}
+
+	public double getCredit() {
+		return credit;
+	}
+
+	public double getDebit() {
+		return debit;
+	}
+}
@@ -1,11 +1,34 @@
 package power.components;
 
-import power.auction.Bid;
+import power.auction.BidBook;
+import power.tools.PolicyStore;
 
 public interface IPowerPlant {
 	public void execute(double quota);
-	public Bid getBid();
+
+	/**
+	 * Writes the bid of the plant for the current hour into the given entry
+	 * of the bid book, once per clearing.
+	 */
+	public void placeBid(BidBook bidBook, int index);
+
+	/**
+	 * Writes a fresh bid for the given hour of the period into the given entry
+	 * of the bid book, as in a day-ahead auction, which is settled by the
+	 * execute of that hour.
+	 */
+	public void placeBid(BidBook bidBook, int index, int hour);
 	
+	/**
+	 * Takes up whatever the store holds of the policy of the plant.
+	 */
+	public void restorePolicy(PolicyStore store);
+
+	/**
+	 * Puts what the plant has learned so far into the store.
+	 */
+	public void storePolicy(PolicyStore store);
+
 	public double getQuantity();
 	public double reward();
 	public double revenue();
@@ -0,0 +1,83 @@
+package power.components;
+
+import power.SmartGridBuilder;
+import power.networks.AdjacencySnapshot;
+
+/**
+ * The asks of an agent's neighbors, in the order a bid of the agent is matched
+ * against them: by price, then by agent id. Every agent posts its ask once per
+ * tick, when it initializes, so the asks are all as old as each other. Were
+ * ties of price always given to the lower id, the agents with the lower ids
+ * would sell first every tick, so the ids are instead taken in a circle
+ * starting at an id which moves on by one every tick, and over as many ticks
+ * as there are ids every agent is first as often as any other. The neighbors
+ * without an ask left come last, since a bid which is not filled is still
+ * recorded with them as a request.
+ *
+ * The book keeps its arrays from one bid to the next, so that matching a bid
+ * does not allocate.
+ */
+public class NeighborhoodOrderBook {
+	private Agent[] sellers = new Agent[8];
+	private double[] prices = new double[8];
+	private int size;
+
+	// the id which is first among asks of the same price this tick
+	private int firstId;
+	private int idCount;
+
+	/**
+	 * Collects and orders the asks of the buyer's neighbors.
+	 */
+	public void collect(Agent buyer) {
+		AdjacencySnapshot adjacency = SmartGridBuilder.getAdjacency();
+		int buyerIndex = buyer.getNetworkIndex();
+		idCount = Agent.getIdCount();
+		firstId = (int) ((long) SmartGridBuilder.getTickCount() % idCount);
+		size = 0;
+		for (int position = adjacency.getFirstNeighbor(buyerIndex); position < adjacency.getLastNeighbor(buyerIndex); position++) {
+			Agent seller = adjacency.getAgent(adjacency.getNeighbor(position));
+			if (size == sellers.length) {
+				increaseCapacity();
+			}
+			double price = seller.getAskQuantity() > 0 ? seller.getAskPrice() : Double.POSITIVE_INFINITY;
+
+			// an insertion sort, since a neighborhood is small
+			int index = size;
+			while (index > 0 && precedes(price, seller, prices[index - 1], sellers[index - 1])) {
+				sellers[index] = sellers[index - 1];
+				prices[index] = prices[index - 1];
+				index--;
+			}
+			sellers[index] = seller;
+			prices[index] = price;
+			size++;
+		}
+	}
+
+	private boolean precedes(double price, Agent seller, double otherPrice, Agent other) {
+		return price < otherPrice || (price == otherPrice && getRank(seller) < getRank(other));
+	}
+
+	private int getRank(Agent seller) {
+		int rank = seller.getId() - firstId;
+		return rank < 0 ? rank + idCount : rank;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public Agent getSeller(int index) {
+		return sellers[index];
+	}
+
+	private void increaseCapacity() {
+		Agent[] newSellers = new Agent[2 * sellers.length];
+		double[] newPrices = new double[2 * prices.length];
+		System.arraycopy(sellers, 0, newSellers, 0, size);
+		System.arraycopy(prices, 0, newPrices, 0, size);
+		sellers = newSellers;
+		prices = newPrices;
+	}
+}
@@ -0,0 +1,117 @@
+package power.components;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+import power.SmartGridBuilder;
+import power.networks.AdjacencySnapshot;
+
+/**
+ * Which agents are cut off from the grid, by agent index in the adjacency
+ * snapshot of the network. An outage spreads from an agent over the network,
+ * a ring of neighbors at a time, and is kept as a region of its own until it
+ * is repaired, so that several outages, each with its own repair time, may be
+ * under way at once. An agent cut off by one outage is not claimed by another,
+ * and repairing an outage reconnects all of its agents in one go.
+ */
+public class OutageEngine {
+	private final BitSet disconnectedSet = new BitSet();
+	private final ArrayList<BitSet> regionList = new ArrayList<BitSet>();
+
+	// the rings of the spread, kept from one outage to the next
+	private int[] frontier = new int[16];
+	private int[] nextFrontier = new int[16];
+
+	/**
+	 * @param index
+	 *            the index of the agent, or -1 for an agent not yet in the
+	 *            adjacency snapshot, which no outage can have reached
+	 */
+	public boolean isConnected(int index) {
+		return index < 0 || !disconnectedSet.get(index);
+	}
+
+	/**
+	 * Cuts off the origin and then every connected agent within the radius of
+	 * it, where the spread stops at agents which are already cut off.
+	 *
+	 * @return the outage, to be passed to {@link #endOutage(int)}
+	 */
+	public int startOutage(int origin, int radius) {
+		return startOutage(origin, radius, null);
+	}
+
+	/**
+	 * As {@link #startOutage(int, int)}, where the spread also stops at the
+	 * agents outside the area, e.g. those of another zone of the grid.
+	 *
+	 * @param area
+	 *            the indices of the agents the outage may reach, or null for
+	 *            all of them
+	 */
+	public int startOutage(int origin, int radius, BitSet area) {
+		AdjacencySnapshot adjacency = SmartGridBuilder.getAdjacency();
+		if (frontier.length < adjacency.size()) {
+			frontier = new int[adjacency.size()];
+			nextFrontier = new int[adjacency.size()];
+		}
+
+		BitSet region = new BitSet();
+		if (!disconnectedSet.get(origin)) {
+			disconnectedSet.set(origin);
+			region.set(origin);
+		}
+		frontier[0] = origin;
+		int frontierSize = 1;
+
+		for (int ring = 0; ring < radius && frontierSize > 0; ring++) {
+			int nextFrontierSize = 0;
+			for (int index = 0; index < frontierSize; index++) {
+				int agent = frontier[index];
+				for (int position = adjacency.getFirstNeighbor(agent); position < adjacency.getLastNeighbor(agent); position++) {
+					int neighbor = adjacency.getNeighbor(position);
+					if (!disconnectedSet.get(neighbor) && (area == null || area.get(neighbor))) {
+						disconnectedSet.set(neighbor);
+						region.set(neighbor);
+						nextFrontier[nextFrontierSize++] = neighbor;
+					}
+				}
+			}
+			int[] swap = frontier;
+			frontier = nextFrontier;
+			nextFrontier = swap;
+			frontierSize = nextFrontierSize;
+		}
+
+		int outage = regionList.indexOf(null);
+		if (outage == -1) {
+			outage = regionList.size();
+			regionList.add(region);
+		} else {
+			regionList.set(outage, region);
+		}
+		return outage;
+	}
+
+	/**
+	 * Reconnects every agent the outage cut off.
+	 */
+	public void endOutage(int outage) {
+		disconnectedSet.andNot(regionList.get(outage));
+		regionList.set(outage, null);
+	}
+
+	public int getOutageCount() {
+		int count = 0;
+		for (BitSet region : regionList) {
+			if (region != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	public int getDisconnectedCount() {
+		return disconnectedSet.cardinality();
+	}
+}
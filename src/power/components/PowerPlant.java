@@ -4,6 +4,7 @@ import org.w3c.dom.Node;
 
 import power.SmartGridBuilder;
 import power.helpers.XmlTools;
+import power.tools.QTable;
 
 public abstract class PowerPlant implements IPowerPlant {
 	public enum LearningType {
@@ -14,7 +15,11 @@ public abstract class PowerPlant implements IPowerPlant {
 		learning
 	}
 
-	public static PowerPlant create(Node xml) {
+	/**
+	 * @param qTable
+	 *            the Q-table the learning plants of the auction share
+	 */
+	public static PowerPlant create(Node xml, QTable qTable) {
 		LearningType plantType = XmlTools.getAttributeValue(xml, XmlAttribute.learning, LearningType.class);
 		PowerPlant plant;
 		if (plantType == null) {
@@ -23,7 +28,7 @@ public abstract class PowerPlant implements IPowerPlant {
 			
 			switch (plantType) {
 			case QLearning:
-				plant = QLearningPlant.create(xml);
+				plant = QLearningPlant.create(xml, qTable);
 				break;
 			case StupidLearning:
 			default:
@@ -4,16 +4,15 @@ import org.w3c.dom.Node;
 
 import com.google.gson.Gson;
 
-import cern.jet.random.Empirical;
 import power.SmartGridBuilder;
-import power.auction.Bid;
+import power.auction.BidBook;
 import power.components.generators.IGenerator;
 import power.components.generators.RandomModelGenerator;
 import power.helpers.XmlTools;
 import power.models.IRandomModel;
-import power.tools.QLearning;
-import repast.simphony.essentials.RepastEssentials;
-import repast.simphony.random.RandomHelper;
+import power.tools.DiscreteSampler;
+import power.tools.PolicyStore;
+import power.tools.QTable;
 
 public class QLearningPlant extends PowerPlant {
 
@@ -43,14 +42,19 @@ public class QLearningPlant extends PowerPlant {
 	// p[HOURS][n_act]
 	private double[] probability;
 
+	// draws the next action from the probabilities
+	private DiscreteSampler actionSampler;
+
 	// propensity of each actions for each action for each hour of the next day
-	// Q[HOURS][n_act]
-	private QLearning[] learnerList;
+	// Q[HOURS][n_act], kept in the Q-table shared by every plant of the auction
+	private final QTable qTable;
+	private final int learner;
 
-	private int previousAction;
+	// the action taken for each hour of the period
+	private int[] previousAction;
 	private double quantity;
 
-	public static PowerPlant create(Node xml) {
+	public static PowerPlant create(Node xml, QTable qTable) {
 		String name = XmlTools.getAttributeValue(xml, XmlTools.XmlAttribute.name);
 
 		String value = null;
@@ -137,7 +141,7 @@ public class QLearningPlant extends PowerPlant {
 			}
 		}
 
-		return new QLearningPlant(name, a, b, c, minQuantityModel, maxQuantityModel, alpha, gamma, scalingFactorList, probabilityList, actionList);
+		return new QLearningPlant(name, a, b, c, minQuantityModel, maxQuantityModel, alpha, gamma, scalingFactorList, probabilityList, actionList, qTable);
 	}
 
 	// constructor
@@ -151,7 +155,8 @@ public class QLearningPlant extends PowerPlant {
 			double gamma,
 			double[] scalingFactorList,
 			double[] probabilityList,
-			double[] actionList) {
+			double[] actionList,
+			QTable qTable) {
 
 		this.id = name;
 		this.a = a;
@@ -166,49 +171,80 @@ public class QLearningPlant extends PowerPlant {
 		for (int i = 0; i < probability.length; i++) {
 			probability[i] = 1.0 / actionList.length;
 		}
+		actionSampler = new DiscreteSampler(actionList.length);
+		actionSampler.rebuild(probability);
 
-		learnerList = new QLearning[(int) SmartGridBuilder.getPeriod()];
-		for (int i = 0; i < learnerList.length; i++) {
-			learnerList[i] = new QLearning(1, actionList.length, alpha, gamma);
-		}
+		previousAction = new int[(int) SmartGridBuilder.getPeriod()];
+		this.qTable = qTable;
+		learner = qTable.addLearner((int) SmartGridBuilder.getPeriod(), 1, actionList.length, alpha, gamma);
 	}
 
 	@Override
 	public void execute(double quota) {
 //		System.err.println(quota);
 		this.quantity = quota;
-		bid = null;
-		int hour = ((int) RepastEssentials.GetTickCount()) % SmartGridBuilder.getPeriod();
-		learnerList[hour].learn(0, previousAction, 0, reward());
+		int hour = ((int) SmartGridBuilder.getTickCount()) % SmartGridBuilder.getPeriod();
+		qTable.learn(learner, hour, 0, previousAction[hour], 0, reward());
+		qTable.copyQValues(learner, hour, 0, probability);
 		double qsum = 0;
 		for (int i = 0; i < actionList.length; i++) {
-			qsum += learnerList[((int) RepastEssentials.GetTickCount()) % SmartGridBuilder.getPeriod()].getQValue(0, i);
+			qsum += probability[i];
 		}
-		for (int i = 0; i < probability.length; i++) {
-			probability[i] = learnerList[((int) RepastEssentials.GetTickCount()) % SmartGridBuilder.getPeriod()].getQValue(0, i) / qsum;
+		if (qsum > 0) {
+			for (int i = 0; i < probability.length; i++) {
+				probability[i] /= qsum;
+			}
+		} else {
+			// nothing was learned yet, so every action is equally likely
+			for (int i = 0; i < probability.length; i++) {
+				probability[i] = 1.0 / actionList.length;
+			}
 		}
+		actionSampler.rebuild(probability);
 	}
 
 	// send bid to auctioneer
-	Bid bid = null;
+	@Override
+	public void placeBid(BidBook bidBook, int index) {
+		placeBid(bidBook, index, ((int) SmartGridBuilder.getTickCount()) % SmartGridBuilder.getPeriod());
+	}
 
 	@Override
-	public Bid getBid() {
-		if (bid == null) {
-			int hour = ((int) RepastEssentials.GetTickCount()) % SmartGridBuilder.getPeriod();
-			previousAction = (int) Math.round(RandomHelper.createEmpirical(probability, Empirical.NO_INTERPOLATION).nextDouble() * actionList.length);
-			scalingFactor[hour] *= 1 + actionList[previousAction];
-//			System.err.println("m[" + hour + "]: " + scalingFactor[hour]);
-			double minQuantity = minQuantityModel.getCurrentValue();
-			double maxQuantity = maxQuantityModel.getCurrentValue();
-			if (minQuantity > maxQuantity) {
-				maxQuantity = minQuantity = (minQuantity + maxQuantity) / 2;
-			}
-			bid = new Bid(scalingFactor[hour] * a, scalingFactor[hour] * b, minQuantity, maxQuantity);
+	public void placeBid(BidBook bidBook, int index, int hour) {
+		previousAction[hour] = actionSampler.sample();
+		scalingFactor[hour] *= 1 + actionList[previousAction[hour]];
+//		System.err.println("m[" + hour + "]: " + scalingFactor[hour]);
+		double minQuantity = minQuantityModel.getCurrentValue();
+		double maxQuantity = maxQuantityModel.getCurrentValue();
+		if (minQuantity > maxQuantity) {
+			maxQuantity = minQuantity = (minQuantity + maxQuantity) / 2;
 		}
-		return bid;
+		bidBook.setBid(index, scalingFactor[hour] * a, scalingFactor[hour] * b, minQuantity, maxQuantity);
 	}
 	
+	@Override
+	public void restorePolicy(PolicyStore store) {
+		if (store.has(id, PolicyStore.Section.ScalingFactor, scalingFactor.length)) {
+			System.arraycopy(store.get(id, PolicyStore.Section.ScalingFactor), 0, scalingFactor, 0, scalingFactor.length);
+		}
+		if (store.has(id, PolicyStore.Section.QValue, qTable.getBlockSize(learner))) {
+			qTable.restoreBlock(learner, store.get(id, PolicyStore.Section.QValue));
+		}
+		if (store.has(id, PolicyStore.Section.Probability, probability.length)) {
+			System.arraycopy(store.get(id, PolicyStore.Section.Probability), 0, probability, 0, probability.length);
+			actionSampler.rebuild(probability);
+		}
+	}
+
+	@Override
+	public void storePolicy(PolicyStore store) {
+		double[] qValues = new double[qTable.getBlockSize(learner)];
+		qTable.copyBlock(learner, qValues);
+		store.put(id, PolicyStore.Section.ScalingFactor, scalingFactor);
+		store.put(id, PolicyStore.Section.QValue, qValues);
+		store.put(id, PolicyStore.Section.Probability, probability);
+	}
+
 	@Override
 	public double getQuantity() {
 		return quantity;
@@ -216,13 +252,13 @@ public class QLearningPlant extends PowerPlant {
 	
 	@Override
 	public double reward() {
-		int hour = ((int) RepastEssentials.GetTickCount()) % SmartGridBuilder.getPeriod();
+		int hour = ((int) SmartGridBuilder.getTickCount()) % SmartGridBuilder.getPeriod();
 		return (scalingFactor[hour] - 1) * (a * quantity * quantity + b * quantity);
 	}
 
 	@Override
 	public double revenue() {
-		int hour = ((int) RepastEssentials.GetTickCount()) % SmartGridBuilder.getPeriod();
+		int hour = ((int) SmartGridBuilder.getTickCount()) % SmartGridBuilder.getPeriod();
 		return a * scalingFactor[hour] * quantity * quantity + b * scalingFactor[hour] * quantity + c;
 	}
 
@@ -2,12 +2,11 @@ package power.components;
 
 import org.w3c.dom.Node;
 
+import power.SimulationConfig;
 import power.SmartGridBuilder;
 import power.distributions.IRandomDistribution;
 import power.distributions.RandomDistribution;
 import power.helpers.XmlTools;
-import repast.simphony.engine.environment.RunEnvironment;
-import repast.simphony.engine.schedule.ScheduleParameters;
 
 public class Reliability implements IReliability {
 
@@ -15,11 +14,15 @@ public class Reliability implements IReliability {
 		Failure, Repair
 	}
 
+	private final SimulationConfig config;
 	private final IRandomDistribution failureDistribution;
 	private final IRandomDistribution repairDistribution;
 
+	// what is left over of the last times drawn, once they are counted down
 	private double timeToFailure;
 	private double timeToRepair;
+	private long repairTicks;
+	private boolean isOperational;
 
 	public static IReliability create(Node xml) {
 		if (xml == null)
@@ -31,40 +34,55 @@ public class Reliability implements IReliability {
 		if (failureDistribution == null || repairDistribution == null) {
 			return BlankReliability.getBlankReliability();
 		} else {
-			return new Reliability(failureDistribution, repairDistribution);
+			return new Reliability(SmartGridBuilder.getConfig(), failureDistribution, repairDistribution);
 		}
 	}
 
-	public Reliability(IRandomDistribution failureDistribution, IRandomDistribution durationDistribution) {
+	public Reliability(SimulationConfig config, IRandomDistribution failureDistribution, IRandomDistribution durationDistribution) {
+		this.config = config;
 		this.failureDistribution = failureDistribution;
 		this.repairDistribution = durationDistribution;
 
-		ScheduleParameters scheduleParams = ScheduleParameters.createRepeating(0, 1, ScheduleParameters.FIRST_PRIORITY);
-		RunEnvironment.getInstance().getCurrentSchedule().schedule(scheduleParams, this, "simulate");
+		if (config.getSimulateReliability()) {
+			SmartGridBuilder.getReliabilityClock().register(this);
+		}
 	}
 
 	@Override
 	public boolean isOperational() {
-		if (!SmartGridBuilder.getSimulateReliability())
+		if (!config.getSimulateReliability())
 			return true;
-		return timeToFailure > 0;
+		return isOperational;
 	}
 
-	public void simulate() {
-		if (!SmartGridBuilder.getSimulateReliability())
-			return;
+	/**
+	 * Fails, if operational, or else draws the next time to failure and time to
+	 * repair. The times are counted down a tick at a time, first the time to
+	 * failure and then the time to repair, and the next times are drawn on the
+	 * tick after both have run out.
+	 *
+	 * @return the tick of the next event
+	 */
+	long handleEvent(long tick) {
+		if (isOperational) {
+			isOperational = false;
+			return tick + repairTicks + 1;
+		}
+
+		timeToFailure += failureDistribution.nextDouble();
+		timeToRepair += repairDistribution.nextDouble();
+		System.out.println("Reset: fail in:" + timeToFailure + ", repair in: " + timeToRepair);
+
+		long failureTicks = timeToFailure > 0 ? (long) Math.ceil(timeToFailure) : 0;
+		repairTicks = timeToRepair > 0 ? (long) Math.ceil(timeToRepair) : 0;
+		timeToFailure -= failureTicks;
+		timeToRepair -= repairTicks;
 
-		if (timeToFailure > 0) {
-			timeToFailure--;
+		if (failureTicks > 0) {
+			isOperational = true;
+			return tick + failureTicks;
 		} else {
-			if (timeToRepair > 0) {
-//				System.out.println("Repaining: fail in:" + timeToFailure + ", repair in: " + timeToRepair);
-				timeToRepair--;
-			} else {
-				timeToFailure += failureDistribution.nextDouble();
-				timeToRepair += repairDistribution.nextDouble();
-				System.out.println("Reset: fail in:" + timeToFailure + ", repair in: " + timeToRepair);
-			}
+			return tick + repairTicks + 1;
 		}
 	}
 
@@ -0,0 +1,103 @@
+package power.components;
+
+import power.SmartGridBuilder;
+import repast.simphony.engine.schedule.ScheduleParameters;
+
+/**
+ * The next failure or end of repair of every simulated reliability, kept in a
+ * binary min-heap of ticks. The clock is the only scheduled action of the
+ * reliabilities: every tick it hands the events which are due to their
+ * reliabilities and leaves the others alone, so a tick costs as much as the
+ * events it brings rather than as much as there are reliabilities.
+ *
+ * Events due at the same tick are handled in the order the reliabilities were
+ * registered, which is the order in which they used to be scheduled, so the
+ * failure and repair times are drawn in the same order as before.
+ */
+public class ReliabilityClock {
+	private Reliability[] reliabilities = new Reliability[16];
+	private long[] dueTicks = new long[16];
+	private int count;
+
+	// the heap holds the index of a reliability, ordered by its due tick
+	private int[] heap = new int[16];
+
+	public ReliabilityClock() {
+		SmartGridBuilder.scheduleRepeating(this, "advance", ScheduleParameters.FIRST_PRIORITY);
+	}
+
+	/**
+	 * Adds the reliability to the clock, with its first event due right away.
+	 */
+	public void register(Reliability reliability) {
+		if (count == reliabilities.length) {
+			increaseCapacity();
+		}
+		int index = count++;
+		reliabilities[index] = reliability;
+		dueTicks[index] = Long.MIN_VALUE;
+		heap[index] = index;
+		siftUp(index);
+	}
+
+	public void advance() {
+		long tick = (long) SmartGridBuilder.getTickCount();
+		while (count > 0 && dueTicks[heap[0]] <= tick) {
+			int index = heap[0];
+			dueTicks[index] = reliabilities[index].handleEvent(tick);
+			siftDown(0);
+		}
+	}
+
+	public int size() {
+		return count;
+	}
+
+	private boolean precedes(int index, int other) {
+		return dueTicks[index] < dueTicks[other] || (dueTicks[index] == dueTicks[other] && index < other);
+	}
+
+	private void siftUp(int position) {
+		int index = heap[position];
+		while (position > 0) {
+			int parent = (position - 1) / 2;
+			if (!precedes(index, heap[parent])) {
+				break;
+			}
+			heap[position] = heap[parent];
+			position = parent;
+		}
+		heap[position] = index;
+	}
+
+	private void siftDown(int position) {
+		int index = heap[position];
+		while (true) {
+			int child = 2 * position + 1;
+			if (child >= count) {
+				break;
+			}
+			if (child + 1 < count && precedes(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!precedes(heap[child], index)) {
+				break;
+			}
+			heap[position] = heap[child];
+			position = child;
+		}
+		heap[position] = index;
+	}
+
+	private void increaseCapacity() {
+		Reliability[] newReliabilities = new Reliability[2 * reliabilities.length];
+		long[] newDueTicks = new long[2 * dueTicks.length];
+		int[] newHeap = new int[2 * heap.length];
+		System.arraycopy(reliabilities, 0, newReliabilities, 0, count);
+		System.arraycopy(dueTicks, 0, newDueTicks, 0, count);
+		System.arraycopy(heap, 0, newHeap, 0, count);
+		reliabilities = newReliabilities;
+		dueTicks = newDueTicks;
+		heap = newHeap;
+	}
+}
@@ -1,8 +1,7 @@
 package power.components;
 
+import power.SmartGridBuilder;
 import power.tools.IDescribable;
-import repast.simphony.engine.environment.RunEnvironment;
-import repast.simphony.engine.schedule.ScheduleParameters;
 
 /**
  * @author That
@@ -10,65 +9,34 @@ import repast.simphony.engine.schedule.ScheduleParameters;
  */
 public class Storage implements IDescribable {
 
-	private static Storage defaulStorage = new Storage(BlankReliability.getBlankReliability(), 0, 1, 1, 0);
 	private final IReliability reliability;
 
 	/**
-	 * The amount of power currently in the system
+	 * The bank which holds the state of the storage, and the index of the
+	 * storage in it. The bank holds the power currently in the system, the
+	 * power added and removed this tick, the capacity, the efficiency, a value
+	 * from [0, 1] indicating the percentage of power stored when charging, and
+	 * the retention, a value from [0, 1] indicating the percentage of power
+	 * kept per unit time.
 	 */
-	private double currentPower;
-	private double power;
-
-	private double currentPowerAdded;
-	private double currentPowerRemoved;
-
-	/**
-	 * the capacity of the system
-	 */
-	private final double capacity;
-
-	/**
-	 * a value from [0, 1] indicating the percentage of power stored when
-	 * charging
-	 */
-	private final double efficiency;
-
-	/**
-	 * a value from [0, 1] indicating the percentage of power lost per unit time
-	 */
-	private final double retention;
+	private final StorageBank bank;
+	private final int index;
 
 	private final double costFactor;
 
 	public Storage(IReliability reliability, double capacity, double efficiency, double retention, double costFactor) {
+		this(SmartGridBuilder.getStorageBank(), reliability, capacity, efficiency, retention, costFactor);
+	}
+
+	Storage(StorageBank bank, IReliability reliability, double capacity, double efficiency, double retention, double costFactor) {
 		if (reliability == null) {
 			this.reliability = BlankReliability.getBlankReliability();
 		} else {
 			this.reliability = reliability;
 		}
-		this.capacity = capacity;
-		this.efficiency = efficiency;
-		this.retention = retention;
+		this.bank = bank;
+		this.index = bank.add(capacity, efficiency, retention);
 		this.costFactor = costFactor;
-
-		// Extras
-		ScheduleParameters scheduleParams = ScheduleParameters.createRepeating(0, 1, 1);
-		RunEnvironment.getInstance().getCurrentSchedule().schedule(scheduleParams, this, "initialize");
-
-		scheduleParams = ScheduleParameters.createRepeating(0, 1, -1);
-		RunEnvironment.getInstance().getCurrentSchedule().schedule(scheduleParams, this, "finalize");
-	}
-
-	public void initialize() {
-		currentPowerAdded = 0;
-		currentPowerRemoved = 0;
-	}
-
-	public void finalize() {
-		if (currentPower > 0) {
-			currentPower *= retention;
-		}
-		power = currentPower;
 	}
 
 	/**
@@ -80,16 +48,7 @@ public class Storage implements IDescribable {
 	public double energize(double power) {
 		if (!reliability.isOperational())
 			return 0.0;
-		if (this.currentPower + power * this.efficiency <= this.capacity) {
-			this.currentPowerAdded += power * this.efficiency;
-			this.currentPower += power * this.efficiency;
-			return power;
-		} else {
-			double powerUsed = (this.capacity - this.currentPower) / this.efficiency;
-			this.currentPowerAdded += powerUsed;
-			this.currentPower = this.capacity;
-			return powerUsed;
-		}
+		return bank.energize(index, power);
 	}
 
 	/**
@@ -100,61 +59,43 @@ public class Storage implements IDescribable {
 	public double draw(double power) {
 		if (!reliability.isOperational())
 			return 0.0;
-		if (this.currentPower > power) {
-			this.currentPowerRemoved += power;
-			this.currentPower -= power;
-			return power;
-		} else {
-			return drain();
-		}
-	}
-
-	/**
-	 * @return returns all the power in the storage system
-	 */
-	private double drain() {
-		if (!reliability.isOperational())
-			return 0.0;
-		double currentPower = this.currentPower;
-		this.currentPowerRemoved += currentPower;
-		this.currentPower = 0;
-		return currentPower;
+		return bank.draw(index, power);
 	}
 
 	public double getCurrentPower() {
 		if (!reliability.isOperational())
 			return 0.0;
-		return currentPower;
+		return bank.getCurrentPower(index);
 	}
 
 	public double getPower() {
-		return power;
+		return bank.getPower(index);
 	}
 
 	public double getCapacity() {
 		if (!reliability.isOperational())
 			return 0.0;
-		return capacity;
+		return bank.getCapacity(index);
 	}
 
 	public double getCurrentAvailableCapacity() {
 		if (!reliability.isOperational())
 			return 0.0;
-		return capacity - currentPower;
+		return bank.getCapacity(index) - bank.getCurrentPower(index);
 	}
 
 	public double getAvailableCapacity() {
 		if (!reliability.isOperational())
 			return 0.0;
-		return capacity - power;
+		return bank.getCapacity(index) - bank.getPower(index);
 	}
 
 	public double getEfficiency() {
-		return efficiency;
+		return bank.getEfficiency(index);
 	}
 
 	public double getRetention() {
-		return retention;
+		return bank.getRetention(index);
 	}
 
 	public double getCostFactor() {
@@ -162,15 +103,15 @@ public class Storage implements IDescribable {
 	}
 
 	public static Storage getDefaultStorage() {
-		return defaulStorage;
+		return SmartGridBuilder.getStorageBank().getDefaultStorage();
 	}
 
 	public double getCurrentPowerAdded() {
-		return currentPowerAdded;
+		return bank.getCurrentPowerAdded(index);
 	}
 
 	public double getCurrentPowerRemoved() {
-		return currentPowerRemoved;
+		return bank.getCurrentPowerRemoved(index);
 	}
 
 	public double getCurrentChangeInPower() {
@@ -187,7 +128,7 @@ public class Storage implements IDescribable {
 		String tabbing = "";
 		if (nestingLevel > 0)
 			tabbing = new String(new char[nestingLevel]).replace("\0", "\t");
-		String str = "Storage: {\n\t" + tabbing + "capacity: " + capacity + "\n\t" + tabbing + "efficiency: " + efficiency + "\n\t" + tabbing + "retention: " + retention + "\n" + tabbing + "}\n";
+		String str = "Storage: {\n\t" + tabbing + "capacity: " + bank.getCapacity(index) + "\n\t" + tabbing + "efficiency: " + getEfficiency() + "\n\t" + tabbing + "retention: " + getRetention() + "\n" + tabbing + "}\n";
 		return str;
 	}
 }
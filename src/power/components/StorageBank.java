@@ -0,0 +1,148 @@
+package power.components;
+
+import java.util.Arrays;
+
+import power.SmartGridBuilder;
+
+/**
+ * The state of every storage system of the simulation, kept in primitive
+ * arrays by the index of the storage. The bank is scheduled once for all of
+ * them: it clears what was added to and removed from each storage when a tick
+ * begins, and applies the retention of each when it ends, in a single pass
+ * over the arrays. A {@link Storage} is the handle of one index, through which
+ * agents charge and draw as before.
+ */
+public class StorageBank {
+	private double[] currentPower = new double[16];
+	private double[] power = new double[16];
+	private double[] currentPowerAdded = new double[16];
+	private double[] currentPowerRemoved = new double[16];
+	private double[] capacity = new double[16];
+	private double[] efficiency = new double[16];
+	private double[] retention = new double[16];
+	private int size;
+
+	private final Storage defaultStorage;
+
+	public StorageBank() {
+		defaultStorage = new Storage(this, BlankReliability.getBlankReliability(), 0, 1, 1, 0);
+
+		SmartGridBuilder.scheduleRepeating(this, "initialize", 1);
+		SmartGridBuilder.scheduleRepeating(this, "finalize", -1);
+	}
+
+	/**
+	 * @return the index of the new storage, which starts out empty
+	 */
+	int add(double capacity, double efficiency, double retention) {
+		if (size == this.capacity.length) {
+			increaseCapacity();
+		}
+		int index = size++;
+		this.capacity[index] = capacity;
+		this.efficiency[index] = efficiency;
+		this.retention[index] = retention;
+		return index;
+	}
+
+	public void initialize() {
+		Arrays.fill(currentPowerAdded, 0, size, 0);
+		Arrays.fill(currentPowerRemoved, 0, size, 0);
+	}
+
+	public void finalize() {
+		for (int index = 0; index < size; index++) {
+			if (currentPower[index] > 0) {
+				currentPower[index] *= retention[index];
+			}
+			power[index] = currentPower[index];
+		}
+	}
+
+	/**
+	 * @return the amount of power which was used to charge the storage
+	 */
+	double energize(int index, double power) {
+		double charge = power * efficiency[index];
+		if (currentPower[index] + charge <= capacity[index]) {
+			currentPowerAdded[index] += charge;
+			currentPower[index] += charge;
+			return power;
+		} else {
+			double powerUsed = (capacity[index] - currentPower[index]) / efficiency[index];
+			currentPowerAdded[index] += powerUsed;
+			currentPower[index] = capacity[index];
+			return powerUsed;
+		}
+	}
+
+	/**
+	 * @return the amount of power provided by the storage
+	 */
+	double draw(int index, double power) {
+		if (currentPower[index] > power) {
+			currentPowerRemoved[index] += power;
+			currentPower[index] -= power;
+			return power;
+		} else {
+			return drain(index);
+		}
+	}
+
+	/**
+	 * @return all the power in the storage
+	 */
+	double drain(int index) {
+		double power = currentPower[index];
+		currentPowerRemoved[index] += power;
+		currentPower[index] = 0;
+		return power;
+	}
+
+	double getCurrentPower(int index) {
+		return currentPower[index];
+	}
+
+	double getPower(int index) {
+		return power[index];
+	}
+
+	double getCurrentPowerAdded(int index) {
+		return currentPowerAdded[index];
+	}
+
+	double getCurrentPowerRemoved(int index) {
+		return currentPowerRemoved[index];
+	}
+
+	double getCapacity(int index) {
+		return capacity[index];
+	}
+
+	double getEfficiency(int index) {
+		return efficiency[index];
+	}
+
+	double getRetention(int index) {
+		return retention[index];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public Storage getDefaultStorage() {
+		return defaultStorage;
+	}
+
+	private void increaseCapacity() {
+		int length = 2 * capacity.length;
+		currentPower = Arrays.copyOf(currentPower, length);
+		power = Arrays.copyOf(power, length);
+		currentPowerAdded = Arrays.copyOf(currentPowerAdded, length);
+		currentPowerRemoved = Arrays.copyOf(currentPowerRemoved, length);
+		capacity = Arrays.copyOf(capacity, length);
+		efficiency = Arrays.copyOf(efficiency, length);
+		retention = Arrays.copyOf(retention, length);
+	}
+}
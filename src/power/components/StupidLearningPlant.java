@@ -3,14 +3,14 @@ package power.components;
 import org.w3c.dom.Node;
 
 import power.SmartGridBuilder;
-import power.auction.Bid;
+import power.auction.BidBook;
 import power.components.generators.IGenerator;
 import power.components.generators.RandomModelGenerator;
 import power.helpers.XmlTools;
 import power.models.IRandomModel;
+import power.tools.PolicyStore;
 import power.tools.StupidLearning;
 
-import repast.simphony.essentials.RepastEssentials;
 
 import com.google.gson.Gson;
 
@@ -43,7 +43,8 @@ public class StupidLearningPlant extends PowerPlant {
 	// Q[HOURS][n_act]
 	private StupidLearning[] learnerList;
 
-	private int previousAction;
+	// the action taken for each hour of the period
+	private int[] previousAction;
 	private double quantity;
 
 	public static PowerPlant create(Node xml) {
@@ -142,6 +143,7 @@ public class StupidLearningPlant extends PowerPlant {
 		this.maxQuantityModel = maxQuantityModel;
 		this.actionList = actionList;
 
+		previousAction = new int[(int) SmartGridBuilder.getPeriod()];
 		learnerList = new StupidLearning[(int) SmartGridBuilder.getPeriod()];
 		for (int i = 0; i < learnerList.length; i++) {
 			learnerList[i] = new StupidLearning(actionList.length, minValue, alpha);
@@ -152,31 +154,54 @@ public class StupidLearningPlant extends PowerPlant {
 	public void execute(double quota) {
 		// System.err.println(quota);
 		this.quantity = quota;
-		bid = null;
-		int hour = ((int) RepastEssentials.GetTickCount()) % SmartGridBuilder.getPeriod();
-		learnerList[hour].learn(previousAction, reward());
+		int hour = ((int) SmartGridBuilder.getTickCount()) % SmartGridBuilder.getPeriod();
+		learnerList[hour].learn(previousAction[hour], reward());
 	}
 
 	// send bid to auctioneer
-	private Bid bid = null;
+	@Override
+	public void placeBid(BidBook bidBook, int index) {
+		placeBid(bidBook, index, ((int) SmartGridBuilder.getTickCount()) % SmartGridBuilder.getPeriod());
+	}
 
 	@Override
-	public Bid getBid() {
-		if (bid == null) {
-			int hour = ((int) RepastEssentials.GetTickCount()) % SmartGridBuilder.getPeriod();
-			previousAction = learnerList[hour].getNextAction();
-			scalingFactor[hour] *= 1 + actionList[previousAction];
-			// System.err.println("m[" + hour + "]: " + scalingFactor[hour]);
-			double minQuantity = minQuantityModel.getCurrentValue();
-			double maxQuantity = maxQuantityModel.getCurrentValue();
-			if (minQuantity > maxQuantity) {
-				maxQuantity = minQuantity = (minQuantity + maxQuantity) / 2;
-			}
-			bid = new Bid(scalingFactor[hour] * a, scalingFactor[hour] * b, minQuantity, maxQuantity);
+	public void placeBid(BidBook bidBook, int index, int hour) {
+		previousAction[hour] = learnerList[hour].getNextAction();
+		scalingFactor[hour] *= 1 + actionList[previousAction[hour]];
+		// System.err.println("m[" + hour + "]: " + scalingFactor[hour]);
+		double minQuantity = minQuantityModel.getCurrentValue();
+		double maxQuantity = maxQuantityModel.getCurrentValue();
+		if (minQuantity > maxQuantity) {
+			maxQuantity = minQuantity = (minQuantity + maxQuantity) / 2;
 		}
-		return bid;
+		bidBook.setBid(index, scalingFactor[hour] * a, scalingFactor[hour] * b, minQuantity, maxQuantity);
 	}
 	
+	@Override
+	public void restorePolicy(PolicyStore store) {
+		if (store.has(id, PolicyStore.Section.ScalingFactor, scalingFactor.length)) {
+			System.arraycopy(store.get(id, PolicyStore.Section.ScalingFactor), 0, scalingFactor, 0, scalingFactor.length);
+		}
+		int stateSize = learnerList[0].getStateSize();
+		if (store.has(id, PolicyStore.Section.Propensity, learnerList.length * stateSize)) {
+			double[] propensity = store.get(id, PolicyStore.Section.Propensity);
+			for (int hour = 0; hour < learnerList.length; hour++) {
+				learnerList[hour].restoreState(propensity, hour * stateSize);
+			}
+		}
+	}
+
+	@Override
+	public void storePolicy(PolicyStore store) {
+		int stateSize = learnerList[0].getStateSize();
+		double[] propensity = new double[learnerList.length * stateSize];
+		for (int hour = 0; hour < learnerList.length; hour++) {
+			learnerList[hour].copyState(propensity, hour * stateSize);
+		}
+		store.put(id, PolicyStore.Section.ScalingFactor, scalingFactor);
+		store.put(id, PolicyStore.Section.Propensity, propensity);
+	}
+
 	@Override
 	public double getQuantity() {
 		return quantity;
@@ -184,13 +209,13 @@ public class StupidLearningPlant extends PowerPlant {
 	
 	@Override
 	public double reward() {
-		int hour = ((int) RepastEssentials.GetTickCount()) % SmartGridBuilder.getPeriod();
+		int hour = ((int) SmartGridBuilder.getTickCount()) % SmartGridBuilder.getPeriod();
 		return (scalingFactor[hour] - 1) * (a * quantity * quantity + b * quantity);
 	}
 
 	@Override
 	public double revenue() {
-		int hour = ((int) RepastEssentials.GetTickCount()) % SmartGridBuilder.getPeriod();
+		int hour = ((int) SmartGridBuilder.getTickCount()) % SmartGridBuilder.getPeriod();
 		return a * scalingFactor[hour] * quantity * quantity + b * scalingFactor[hour] * quantity + c;
 	}
 
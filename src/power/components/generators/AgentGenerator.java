@@ -7,6 +7,8 @@ import org.w3c.dom.Node;
 import power.SmartGridBuilder;
 import power.components.Grid;
 import power.components.Agent;
+import power.components.AgentStateTable;
+import power.components.AgentStateTable.Column;
 import power.components.IReliability;
 import power.components.Storage;
 import power.distributions.IRandomDistribution;
@@ -19,7 +21,6 @@ import power.models.BlankRandomModel;
 import power.models.IRandomModel;
 import power.tools.Absolute;
 import repast.simphony.engine.schedule.ScheduledMethod;
-import repast.simphony.essentials.RepastEssentials;
 
 /**
  * @author That
@@ -55,6 +56,7 @@ public class AgentGenerator implements IGenerator<Agent> {
 	private IRandomDistribution foresightGenerator;
 
 	private final LinkedList<Agent> agentList = new LinkedList<Agent>();
+	private final AgentStateTable stateTable = new AgentStateTable();
 
 	// factors
 	private final AdjustedRunningMax demandWindow;
@@ -93,8 +95,8 @@ public class AgentGenerator implements IGenerator<Agent> {
 			StorageGenerator storageGenerator,
 			IRandomDistribution foresightGenerator) {
 
-		this.grid = SmartGridBuilder.getGrid();
 		this.name = name;
+		this.grid = SmartGridBuilder.getGrid().getZone(name);
 		this.population = population;
 		this.reliabilityGenerator = reliabilityGenerator;
 		this.suspendableModelGenerator = suspendableModelGenerator;
@@ -103,8 +105,8 @@ public class AgentGenerator implements IGenerator<Agent> {
 		this.storageGenerator = storageGenerator;
 		this.foresightGenerator = foresightGenerator;
 
-		this.demandWindow = new AdjustedRunningMax(Absolute.getSingleton());
-		this.deficitWindow = new RunningMean();
+		this.demandWindow = new AdjustedRunningMax(SmartGridBuilder.getConfig(), Absolute.getSingleton());
+		this.deficitWindow = new RunningMean(SmartGridBuilder.getConfig());
 	}
 
 	@Override
@@ -148,17 +150,20 @@ public class AgentGenerator implements IGenerator<Agent> {
 			forsight = foresightGenerator.nextInt();
 		}
 
-		Agent agent = new Agent(grid, this, reliability, suspendableModel, loadModel, generationModel, storage, forsight);
+		Agent agent = new Agent(SmartGridBuilder.getConfig(), grid, this, reliability, suspendableModel, loadModel, generationModel, storage, forsight);
 
 		agentList.add(agent);
 		SmartGridBuilder.getContext().add(agent);
+		SmartGridBuilder.invalidateAdjacency();
 
 		return agent;
 	}
 
 	public Agent remove() {
 		Agent agent = agentList.removeLast();
+		stateTable.removeRow();
 		SmartGridBuilder.getContext().remove(agent);
+		SmartGridBuilder.invalidateAdjacency();
 		return agent;
 	}
 
@@ -168,7 +173,10 @@ public class AgentGenerator implements IGenerator<Agent> {
 	}
 
 	public void resetPopulation() {
-		agentList.clear();
+		// the agents are removed one by one to release their rows of the state table
+		while (!agentList.isEmpty()) {
+			remove();
+		}
 		adjustPopulation();
 	}
 
@@ -203,6 +211,10 @@ public class AgentGenerator implements IGenerator<Agent> {
 		return str;
 	}
 
+	public Grid getGrid() {
+		return grid;
+	}
+
 	public String getName() {
 		return name;
 	}
@@ -226,6 +238,10 @@ public class AgentGenerator implements IGenerator<Agent> {
 		return agentList;
 	}
 
+	public AgentStateTable getStateTable() {
+		return stateTable;
+	}
+
 	/*
 	 * Start of generation methods
 	 */
@@ -298,7 +314,7 @@ public class AgentGenerator implements IGenerator<Agent> {
 
 	@ScheduledMethod(start = 0, interval = 1, priority = 2)
 	public void initialize() {
-		period = ((int) RepastEssentials.GetTickCount()) % SmartGridBuilder.getPeriod();
+		period = ((int) SmartGridBuilder.getTickCount()) % SmartGridBuilder.getPeriod();
 
 		// flush memoirs
 		currentPowerBoughtFromGrid = null;
@@ -315,6 +331,9 @@ public class AgentGenerator implements IGenerator<Agent> {
 		currentProfit = null;
 		maxDemandOfPeriod = null;
 
+		// the agents initialize after their group
+		stateTable.reset();
+
 		deficitWindow.add(getDeficit());
 	}
 
@@ -395,11 +414,7 @@ public class AgentGenerator implements IGenerator<Agent> {
 
 	public double getCurrentPowerBoughtFromGrid() {
 		if (currentPowerBoughtFromGrid == null) {
-			double sum = 0.0;
-			for (Agent agent : agentList) {
-				sum += agent.getCurrentPowerBoughtFromGrid();
-			}
-			currentPowerBoughtFromGrid = sum / getPopulation();
+			currentPowerBoughtFromGrid = stateTable.sum(Column.PowerBoughtFromGrid) / getPopulation();
 		}
 		return currentPowerBoughtFromGrid;
 	}
@@ -412,11 +427,7 @@ public class AgentGenerator implements IGenerator<Agent> {
 
 	public double getCurrentPowerSoldToGrid() {
 		if (currentPowerSoldToGrid == null) {
-			double sum = 0.0;
-			for (Agent agent : agentList) {
-				sum += agent.getCurrentPowerSoldToGrid();
-			}
-			currentPowerSoldToGrid = sum / getPopulation();
+			currentPowerSoldToGrid = stateTable.sum(Column.PowerSoldToGrid) / getPopulation();
 		}
 		return currentPowerSoldToGrid;
 	}
@@ -426,7 +437,7 @@ public class AgentGenerator implements IGenerator<Agent> {
 	}
 
 	public double getDemandSTD() {
-		return demandWindow.recomputeStandardDev((int) SmartGridBuilder.getPeriod());
+		return demandWindow.getRecentStandardDev();
 	}
 
 	public String getDemandSTDLabel() {
@@ -434,7 +445,7 @@ public class AgentGenerator implements IGenerator<Agent> {
 	}
 	
 	public double getDemandVariance() {
-		return demandWindow.recomputeVariance((int) SmartGridBuilder.getPeriod());
+		return demandWindow.getRecentVariance();
 	}
 
 	public String getDemandVarianceLabel() {
@@ -442,7 +453,7 @@ public class AgentGenerator implements IGenerator<Agent> {
 	}
 	
 	public double getDemandCV() {
-		return demandWindow.recomputeStandardDev((int) SmartGridBuilder.getPeriod()) / Math.abs(demandWindow.getRecentMean());
+		return demandWindow.getRecentStandardDev() / Math.abs(demandWindow.getRecentMean());
 	}
 
 	public String getDemandCVLabel() {
@@ -536,11 +547,7 @@ public class AgentGenerator implements IGenerator<Agent> {
 
 	public double getCurrentAddedSuspension() {
 		if (currentAddedSuspension == null) {
-			double sum = 0;
-			for (Agent agent : agentList) {
-				sum += agent.getCurrentAddedSuspension();
-			}
-			currentAddedSuspension = sum / getPopulation();
+			currentAddedSuspension = stateTable.sum(Column.AddedSuspension) / getPopulation();
 		}
 		return currentAddedSuspension;
 	}
@@ -553,11 +560,7 @@ public class AgentGenerator implements IGenerator<Agent> {
 
 	public double getCurrentRemovedSuspension() {
 		if (currentRemovedSuspension == null) {
-			double sum = 0;
-			for (Agent agent : agentList) {
-				sum += agent.getCurrentRemovedSuspension();
-			}
-			currentRemovedSuspension = sum / getPopulation();
+			currentRemovedSuspension = stateTable.sum(Column.RemovedSuspension) / getPopulation();
 		}
 		return currentRemovedSuspension;
 	}
@@ -570,11 +573,7 @@ public class AgentGenerator implements IGenerator<Agent> {
 
 	public double getSuspendedLoad() {
 		if (suspendedLoad == null) {
-			double sum = 0;
-			for (Agent agent : agentList) {
-				sum += agent.getSuspendedLoad();
-			}
-			suspendedLoad = sum / getPopulation();
+			suspendedLoad = stateTable.sum(Column.SuspendedLoad) / getPopulation();
 		}
 		return suspendedLoad;
 	}
@@ -587,11 +586,7 @@ public class AgentGenerator implements IGenerator<Agent> {
 
 	public double getCurrentNeighborhoodRequest() {
 		if (currentNeighborhoodRequest == null) {
-			double sum = 0.0;
-			for (Agent agent : agentList) {
-				sum += agent.getCurrentNeighborhoodRequest();
-			}
-			currentNeighborhoodRequest = sum / getPopulation();
+			currentNeighborhoodRequest = stateTable.sum(Column.NeighborhoodRequest) / getPopulation();
 		}
 		return currentNeighborhoodRequest;
 	}
@@ -621,11 +616,7 @@ public class AgentGenerator implements IGenerator<Agent> {
 
 	public double getCurrentPowerSoldToNeighbors() {
 		if (currentPowerSoldToNeighbors == null) {
-			double sum = 0.0;
-			for (Agent agent : agentList) {
-				sum += agent.getCurrentPowerSoldToNeighbors();
-			}
-			currentPowerSoldToNeighbors = sum / getPopulation();
+			currentPowerSoldToNeighbors = stateTable.sum(Column.PowerSoldToNeighbors) / getPopulation();
 		}
 		return currentPowerSoldToNeighbors;
 	}
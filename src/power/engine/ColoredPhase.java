@@ -0,0 +1,201 @@
+package power.engine;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import power.SmartGridBuilder;
+import power.components.Agent;
+import power.components.Grid;
+import power.components.GridLedger;
+import power.networks.AdjacencySnapshot;
+
+/**
+ * A Phase for agent methods which also touch the agent's neighbors, such as
+ * Agent.execute trading with the neighbors. The agents are greedily colored so
+ * that no two agents of one color are adjacent or share a neighbor, and the
+ * color classes are run one after another, each split across the workers of a
+ * ForkJoinPool.
+ *
+ * The grid transactions of every slice go into a ledger of its own and the
+ * ledgers are merged in slice order, and the agents match their bids against
+ * their neighbors' asks in a fixed order, so that the result does not depend
+ * on the thread scheduling. The power the grid buys back is limited, so the
+ * buy back left when a color starts is split among its slices by their size.
+ *
+ * The coloring is taken from the adjacency snapshot of the network, and is
+ * redone whenever the snapshot is rebuilt after the topology changed.
+ */
+public class ColoredPhase extends Phase {
+	private static final int SLICE_SIZE = 32;
+
+	private final ForkJoinPool pool;
+	private final Method prelude;
+
+	private ArrayList<int[]> colorList;
+	private ArrayList<GridLedger[]> ledgerList;
+	// the snapshot the colors were computed from
+	private AdjacencySnapshot coloredAdjacency;
+
+	private class Slice extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int[] color;
+		private final GridLedger[] ledgers;
+		private final int from;
+		private final int to;
+
+		public Slice(int[] color, GridLedger[] ledgers, int from, int to) {
+			this.color = color;
+			this.ledgers = ledgers;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= 1) {
+				executeSlice(color, ledgers[from], from * SLICE_SIZE, Math.min(color.length, (from + 1) * SLICE_SIZE));
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Slice(color, ledgers, from, middle), new Slice(color, ledgers, middle, to));
+			}
+		}
+	}
+
+	public ColoredPhase(Method method, double start, double interval, double priority, ForkJoinPool pool, Method prelude) {
+		super(method, start, interval, priority);
+		this.pool = pool;
+		this.prelude = prelude;
+	}
+
+	@Override
+	public void add(Object target) {
+		if (!(target instanceof Agent)) {
+			System.err.println("Only agents may be colored: " + target);
+			System.exit(1);
+		}
+		super.add(target);
+		colorList = null;
+	}
+
+	@Override
+	public void execute() {
+		ArrayList<Object> targetList = getTargetList();
+		if (prelude != null) {
+			for (int index = 0; index < targetList.size(); index++) {
+				invoke(prelude, targetList.get(index));
+			}
+		}
+		AdjacencySnapshot adjacency = SmartGridBuilder.getAdjacency();
+		if (colorList == null || adjacency != coloredAdjacency) {
+			color(adjacency);
+		}
+
+		Grid grid = SmartGridBuilder.getGrid();
+		for (int colorIndex = 0; colorIndex < colorList.size(); colorIndex++) {
+			int[] color = colorList.get(colorIndex);
+			GridLedger[] ledgers = ledgerList.get(colorIndex);
+			if (ledgers.length == 1) {
+				executeSlice(color, ledgers[0], 0, color.length);
+			} else {
+				pool.invoke(new Slice(color, ledgers, 0, ledgers.length));
+			}
+
+			for (int index = 0; index < ledgers.length; index++) {
+				grid.mergeLedger(ledgers[index]);
+			}
+			for (int index = 0; index < color.length; index++) {
+				((Agent) targetList.get(color[index])).endConcurrentExecution();
+			}
+		}
+	}
+
+	private void executeSlice(int[] color, GridLedger ledger, int from, int to) {
+		ArrayList<Object> targetList = getTargetList();
+		Grid grid = SmartGridBuilder.getGrid();
+		grid.openLedger(ledger);
+		try {
+			for (int index = from; index < to; index++) {
+				Agent agent = (Agent) targetList.get(color[index]);
+				agent.beginConcurrentExecution();
+				invoke(agent);
+			}
+		} finally {
+			grid.closeLedger();
+		}
+	}
+
+	/**
+	 * Greedy distance-2 coloring of the agents in their scheduling order.
+	 */
+	private void color(AdjacencySnapshot adjacency) {
+		ArrayList<Object> targetList = getTargetList();
+
+		// the position in the schedule of the agent with each network index
+		int[] targetIndexOf = new int[adjacency.size()];
+		Arrays.fill(targetIndexOf, -1);
+		int[] networkIndexOf = new int[targetList.size()];
+		for (int index = 0; index < targetList.size(); index++) {
+			networkIndexOf[index] = ((Agent) targetList.get(index)).getNetworkIndex();
+			if (networkIndexOf[index] >= 0) {
+				targetIndexOf[networkIndexOf[index]] = index;
+			}
+		}
+
+		int[] colors = new int[targetList.size()];
+		int[] colorSizes = new int[targetList.size() + 1];
+		int colorCount = 0;
+		BitSet usedSet = new BitSet();
+		for (int index = 0; index < targetList.size(); index++) {
+			usedSet.clear();
+			int agent = networkIndexOf[index];
+			if (agent >= 0) {
+				for (int position = adjacency.getFirstNeighbor(agent); position < adjacency.getLastNeighbor(agent); position++) {
+					int neighbor = adjacency.getNeighbor(position);
+					markColor(targetIndexOf, colors, index, neighbor, usedSet);
+					for (int second = adjacency.getFirstNeighbor(neighbor); second < adjacency.getLastNeighbor(neighbor); second++) {
+						markColor(targetIndexOf, colors, index, adjacency.getNeighbor(second), usedSet);
+					}
+				}
+			}
+			int color = usedSet.nextClearBit(0);
+			colors[index] = color;
+			colorSizes[color]++;
+			colorCount = Math.max(colorCount, color + 1);
+		}
+
+		colorList = new ArrayList<int[]>(colorCount);
+		ledgerList = new ArrayList<GridLedger[]>(colorCount);
+		for (int color = 0; color < colorCount; color++) {
+			colorList.add(new int[colorSizes[color]]);
+			GridLedger[] ledgers = new GridLedger[(colorSizes[color] + SLICE_SIZE - 1) / SLICE_SIZE];
+			for (int index = 0; index < ledgers.length; index++) {
+				ledgers[index] = new GridLedger();
+				int sliceSize = Math.min(colorSizes[color], (index + 1) * SLICE_SIZE) - index * SLICE_SIZE;
+				ledgers[index].setBuyBackShare((double) sliceSize / colorSizes[color]);
+			}
+			ledgerList.add(ledgers);
+		}
+		int[] fill = new int[colorCount];
+		for (int index = 0; index < colors.length; index++) {
+			colorList.get(colors[index])[fill[colors[index]]++] = index;
+		}
+		coloredAdjacency = adjacency;
+	}
+
+	private static void markColor(int[] targetIndexOf, int[] colors, int index, int other, BitSet usedSet) {
+		int otherIndex = targetIndexOf[other];
+		if (otherIndex >= 0 && otherIndex < index) {
+			usedSet.set(colors[otherIndex]);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return super.toString() + (colorList == null ? "" : " in " + colorList.size() + " colors");
+	}
+}
@@ -0,0 +1,357 @@
+package power.engine;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import power.auction.Auctioneer;
+import power.auction.ZonalAuctioneer;
+import power.SmartGridBuilder;
+import power.components.Grid;
+import power.helpers.XmlTools;
+import repast.simphony.context.Context;
+import repast.simphony.context.DefaultContext;
+import repast.simphony.engine.schedule.ScheduledMethod;
+import repast.simphony.random.RandomHelper;
+
+/**
+ * Runs a SmartGridBuilder scenario without the Repast runtime. The Grid,
+ * AgentGenerator and Agent graph is built by the regular SmartGridBuilder
+ * into a plain context, and every {@link ScheduledMethod} and every action
+ * registered through {@link SmartGridBuilder#scheduleRepeating} is stepped in
+ * priority order by a simple loop.
+ *
+ * Note: A headless run does not give the same numbers as a Repast run with the
+ * same seed. Actions of equal priority are run in the order they were
+ * registered, while Repast shuffles them, so the agents draw their random
+ * numbers and trade in a different order. Headless runs are reproducible among
+ * themselves, and are meant for comparing one version of the model with
+ * another.
+ *
+ * Usage: HeadlessEngine scenario.xml ticks [name=value ...]
+ *
+ * Parameter defaults are read from power.rs/parameters.xml and may be
+ * overridden on the command line, e.g. randomSeed=42 windowSize=240.
+ * The model parameters may also be set by the scenario itself, see
+ * {@link power.SimulationConfig}, in which case parameters.xml is optional.
+ * 
+ * With parallelPhases=true, methods marked {@link ParallelSafe} are run on a
+ * ForkJoinPool instead of one object after another. Methods whose scope is the
+ * neighborhood are only run in parallel with coloredExecution=true, since the
+ * agents then trade in a different order than in the serial run.
+ */
+public class HeadlessEngine {
+
+	private enum XmlNode {
+		parameter
+	}
+
+	private enum XmlAttribute {
+		name, type, defaultValue
+	}
+
+	private static final String DEFAULT_PARAMETER_FILE = "power.rs/parameters.xml";
+	private static final String NULL_VALUE = "__NULL__";
+
+	private static HeadlessEngine instance;
+
+	private final HashMap<String, Object> parameterMap;
+	private final ArrayList<Phase> phaseList;
+	private final HashMap<Class<?>, ArrayList<Method>> scheduledMethodMap;
+
+	private Context<Object> context;
+	private ForkJoinPool pool;
+	private double tick;
+
+	public static void main(String[] args) {
+		if (args.length < 2) {
+			System.err.println("Usage: HeadlessEngine scenario.xml ticks [name=value ...]");
+			System.exit(1);
+		}
+
+		HashMap<String, String> typeMap = new HashMap<String, String>();
+		HashMap<String, Object> parameterMap = readParameters(DEFAULT_PARAMETER_FILE, typeMap);
+		// the engine's own parameters are typed even without parameters.xml
+		for (String name : new String[] { "parallelPhases", "coloredExecution" }) {
+			if (!typeMap.containsKey(name)) {
+				typeMap.put(name, "boolean");
+			}
+		}
+		if (!typeMap.containsKey("randomSeed")) {
+			typeMap.put("randomSeed", "int");
+		}
+		parameterMap.put("fileName", args[0]);
+		for (int index = 2; index < args.length; index++) {
+			int split = args[index].indexOf('=');
+			if (split <= 0) {
+				System.err.println("Expected name=value but found: " + args[index]);
+				System.exit(1);
+			}
+			String name = args[index].substring(0, split);
+			String type = typeMap.containsKey(name) ? typeMap.get(name) : "java.lang.String";
+			parameterMap.put(name, parseValue(type, args[index].substring(split + 1)));
+		}
+
+		long startTime = System.nanoTime();
+		HeadlessEngine engine = new HeadlessEngine(parameterMap);
+		engine.build();
+		long buildTime = System.nanoTime();
+
+		long ticks = Long.parseLong(args[1]);
+		engine.run(ticks);
+		long runTime = System.nanoTime();
+		engine.end();
+
+		Grid grid = SmartGridBuilder.getGrid();
+		System.out.println("Agents: " + SmartGridBuilder.getAgentPopulation() + ", ticks: " + ticks);
+		System.out.println("Build time: " + (buildTime - startTime) / 1e6 + " ms");
+		System.out.println("Run time: " + (runTime - buildTime) / 1e6 + " ms (" + ticks / ((runTime - buildTime) / 1e9) + " ticks/s)");
+		System.out.println("Mean base price: " + grid.getMeanBasePrice());
+		System.out.println("Mean load factor: " + grid.getMeanLoadFactor());
+		if (grid instanceof Auctioneer) {
+			System.out.println(((Auctioneer) grid).getClearingMetrics());
+		} else if (grid instanceof ZonalAuctioneer) {
+			ZonalAuctioneer zonalGrid = (ZonalAuctioneer) grid;
+			for (int index = 0; index < zonalGrid.getZoneCount(); index++) {
+				System.out.println(zonalGrid.getZoneName(index) + ": " + zonalGrid.getZone(index).getClearingMetrics());
+			}
+		}
+
+		engine.shutdown();
+	}
+
+	public static boolean isActive() {
+		return instance != null;
+	}
+
+	public static HeadlessEngine getInstance() {
+		return instance;
+	}
+
+	public HeadlessEngine(HashMap<String, Object> parameterMap) {
+		this.parameterMap = parameterMap;
+		this.phaseList = new ArrayList<Phase>();
+		this.scheduledMethodMap = new HashMap<Class<?>, ArrayList<Method>>();
+		this.tick = 0;
+	}
+
+	/**
+	 * Seeds the random streams, builds the scenario and collects the scheduled
+	 * methods of everything that was added to the context.
+	 */
+	public void build() {
+		instance = this;
+
+		Object seed = parameterMap.get("randomSeed");
+		if (seed == null) {
+			seed = (int) System.currentTimeMillis();
+			parameterMap.put("randomSeed", seed);
+		}
+		RandomHelper.setSeed((Integer) seed);
+
+		if (Boolean.TRUE.equals(parameterMap.get("parallelPhases")) || Boolean.TRUE.equals(parameterMap.get("coloredExecution"))) {
+			pool = new ForkJoinPool();
+		}
+
+		context = new DefaultContext<Object>();
+		new SmartGridBuilder().build(context);
+
+		for (Object target : context) {
+			for (Method method : getScheduledMethods(target.getClass())) {
+				ScheduledMethod annotation = method.getAnnotation(ScheduledMethod.class);
+				getPhase(method, annotation.start(), annotation.interval(), annotation.priority()).add(target);
+			}
+		}
+	}
+
+	public void step() {
+		for (int index = 0; index < phaseList.size(); index++) {
+			Phase phase = phaseList.get(index);
+			if (phase.isDue(tick)) {
+				phase.execute();
+			}
+		}
+		tick++;
+	}
+
+	public void run(long ticks) {
+		for (long count = 0; count < ticks; count++) {
+			step();
+		}
+	}
+
+	/**
+	 * Runs the methods scheduled at the end of the run, as the Repast schedule
+	 * does once the run stops.
+	 */
+	public void end() {
+		for (int index = 0; index < phaseList.size(); index++) {
+			Phase phase = phaseList.get(index);
+			if (phase.isAtEnd()) {
+				phase.execute();
+			}
+		}
+	}
+
+	public void shutdown() {
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+		if (instance == this) {
+			instance = null;
+		}
+	}
+
+	public double getTickCount() {
+		return tick;
+	}
+
+	public Object getParameter(String name) {
+		return parameterMap.get(name);
+	}
+
+	/**
+	 * @return the pool the parallel phases run on, or null when they are off
+	 */
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	public Context<Object> getContext() {
+		return context;
+	}
+
+	public ArrayList<Phase> getPhaseList() {
+		return phaseList;
+	}
+
+	/**
+	 * Counterpart of scheduling a repeating action on the Repast schedule.
+	 */
+	public void schedule(Object target, String methodName, double priority) {
+		try {
+			getPhase(target.getClass().getMethod(methodName), 0, 1, priority).add(target);
+		} catch (NoSuchMethodException e) { // poor error handling
+			System.err.println("Unable to schedule " + methodName + " on " + target);
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	private Phase getPhase(Method method, double start, double interval, double priority) {
+		int position = phaseList.size();
+		for (int index = 0; index < phaseList.size(); index++) {
+			Phase phase = phaseList.get(index);
+			if (phase.matches(method, start, interval, priority)) {
+				return phase;
+			} else if (phase.getPriority() < priority && position == phaseList.size()) {
+				position = index;
+			}
+		}
+
+		Phase phase = createPhase(method, start, interval, priority);
+		phaseList.add(position, phase);
+		return phase;
+	}
+
+	private Phase createPhase(Method method, double start, double interval, double priority) {
+		ParallelSafe parallelSafe = method.getAnnotation(ParallelSafe.class);
+		if (pool == null || parallelSafe == null) {
+			return new Phase(method, start, interval, priority);
+		}
+
+		boolean colored = parallelSafe.scope() == ParallelSafe.Scope.Neighborhood;
+		String parameter = colored ? "coloredExecution" : "parallelPhases";
+		if (!Boolean.TRUE.equals(parameterMap.get(parameter))) {
+			return new Phase(method, start, interval, priority);
+		}
+
+		Method prelude = null;
+		if (!parallelSafe.prelude().isEmpty()) {
+			try {
+				prelude = method.getDeclaringClass().getMethod(parallelSafe.prelude());
+			} catch (NoSuchMethodException e) { // poor error handling
+				System.err.println("Unable to find the prelude " + parallelSafe.prelude() + " of " + method.getName());
+				e.printStackTrace();
+				System.exit(1);
+			}
+		}
+		if (colored) {
+			return new ColoredPhase(method, start, interval, priority, pool, prelude);
+		}
+		return new ParallelPhase(method, start, interval, priority, pool, prelude);
+	}
+
+	/**
+	 * @return the annotated methods of the type and its super types. An
+	 *         overriding method which is not annotated itself inherits the
+	 *         schedule of the method it overrides.
+	 */
+	private ArrayList<Method> getScheduledMethods(Class<?> type) {
+		ArrayList<Method> methodList = scheduledMethodMap.get(type);
+		if (methodList == null) {
+			methodList = new ArrayList<Method>();
+			HashSet<String> nameSet = new HashSet<String>();
+			for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+				for (Method method : current.getDeclaredMethods()) {
+					if (method.isAnnotationPresent(ScheduledMethod.class) && method.getParameterTypes().length == 0 && nameSet.add(method.getName())) {
+						method.setAccessible(true);
+						methodList.add(method);
+					}
+				}
+			}
+			scheduledMethodMap.put(type, methodList);
+		}
+		return methodList;
+	}
+
+	private static HashMap<String, Object> readParameters(String fileName, HashMap<String, String> typeMap) {
+		HashMap<String, Object> parameterMap = new HashMap<String, Object>();
+		if (!new File(fileName).exists()) {
+			return parameterMap;
+		}
+
+		Element root = null;
+		try {
+			DocumentBuilder builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+			root = builder.parse(fileName).getDocumentElement();
+		} catch (Exception e) { // poor error handling
+			System.err.println("Unable to open or parse: " + fileName);
+			(new Exception()).printStackTrace();
+			System.exit(1);
+		}
+
+		for (Node node : XmlTools.getAllNodes(root, XmlNode.parameter)) {
+			String name = XmlTools.getHardAttributeValue(node, XmlAttribute.name);
+			String type = XmlTools.getHardAttributeValue(node, XmlAttribute.type);
+			String value = XmlTools.getAttributeValue(node, XmlAttribute.defaultValue);
+			typeMap.put(name, type);
+			parameterMap.put(name, parseValue(type, value));
+		}
+		return parameterMap;
+	}
+
+	private static Object parseValue(String type, String value) {
+		if (value == null || NULL_VALUE.equals(value)) {
+			return null;
+		} else if (type.equals("int") || type.equals("java.lang.Integer")) {
+			return Integer.parseInt(value);
+		} else if (type.equals("double") || type.equals("java.lang.Double")) {
+			return Double.parseDouble(value);
+		} else if (type.equals("boolean") || type.equals("java.lang.Boolean")) {
+			return Boolean.parseBoolean(value);
+		} else {
+			return value;
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package power.engine;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A Phase whose targets are split across the workers of a ForkJoinPool. The
+ * optional prelude is run serially beforehand (see {@link ParallelSafe}).
+ */
+public class ParallelPhase extends Phase {
+	private static final int MIN_SLICE_SIZE = 256;
+
+	private final ForkJoinPool pool;
+	private final Method prelude;
+
+	private class Slice extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final int sliceSize;
+
+		public Slice(int from, int to, int sliceSize) {
+			this.from = from;
+			this.to = to;
+			this.sliceSize = sliceSize;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= sliceSize) {
+				ArrayList<Object> targetList = getTargetList();
+				for (int index = from; index < to; index++) {
+					ParallelPhase.this.invoke(targetList.get(index));
+				}
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Slice(from, middle, sliceSize), new Slice(middle, to, sliceSize));
+			}
+		}
+	}
+
+	public ParallelPhase(Method method, double start, double interval, double priority, ForkJoinPool pool, Method prelude) {
+		super(method, start, interval, priority);
+		this.pool = pool;
+		this.prelude = prelude;
+	}
+
+	@Override
+	public void execute() {
+		ArrayList<Object> targetList = getTargetList();
+		if (prelude != null) {
+			for (int index = 0; index < targetList.size(); index++) {
+				invoke(prelude, targetList.get(index));
+			}
+		}
+
+		int sliceSize = Math.max(MIN_SLICE_SIZE, targetList.size() / (4 * pool.getParallelism()));
+		if (targetList.size() <= sliceSize) {
+			super.execute();
+		} else {
+			pool.invoke(new Slice(0, targetList.size(), sliceSize));
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package power.engine;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a scheduled method which only touches the state of its own object, so
+ * that the HeadlessEngine may invoke it on many objects concurrently. With the
+ * Neighborhood scope the method may also touch the state of the object's
+ * neighbors in the Smart Grid Network; such a phase is colored so that no two
+ * objects running at the same time share a neighbor.
+ * 
+ * Work that is not local, such as drawing from the shared random stream, can
+ * be moved into a prelude method which is invoked serially on every object, in
+ * schedule order, before the concurrent part starts. This keeps parallel runs
+ * identical to serial ones.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface ParallelSafe {
+	public enum Scope {
+		Self, Neighborhood
+	}
+
+	String prelude() default "";
+
+	Scope scope() default Scope.Self;
+}
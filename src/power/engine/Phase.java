@@ -0,0 +1,88 @@
+package power.engine;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+
+import repast.simphony.engine.schedule.ScheduleParameters;
+
+/**
+ * A single scheduled method together with every object it is invoked on. The
+ * HeadlessEngine runs phases in priority order, like the Repast schedule runs
+ * the corresponding actions, but the objects of a phase are invoked in the
+ * order they were added, and phases of equal priority in the order they were
+ * created, where Repast shuffles actions of equal priority every tick.
+ */
+public class Phase {
+	private final double priority;
+	private final double start;
+	private final double interval;
+	private final Method method;
+	private final ArrayList<Object> targetList;
+
+	public Phase(Method method, double start, double interval, double priority) {
+		this.method = method;
+		this.start = start;
+		this.interval = interval;
+		this.priority = priority;
+		this.targetList = new ArrayList<Object>();
+	}
+
+	public void add(Object target) {
+		targetList.add(target);
+	}
+
+	public boolean isDue(double tick) {
+		if (tick < start) {
+			return false;
+		} else if (interval <= 0) {
+			return tick == start;
+		} else {
+			return (tick - start) % interval == 0;
+		}
+	}
+
+	public boolean isAtEnd() {
+		return start == ScheduleParameters.END;
+	}
+
+	public void execute() {
+		for (int index = 0; index < targetList.size(); index++) {
+			invoke(targetList.get(index));
+		}
+	}
+
+	protected void invoke(Object target) {
+		invoke(method, target);
+	}
+
+	protected static void invoke(Method method, Object target) {
+		try {
+			method.invoke(target);
+		} catch (Exception e) { // poor error handling
+			System.err.println("Unable to execute " + method.getName() + " on " + target);
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	public boolean matches(Method method, double start, double interval, double priority) {
+		return this.method.equals(method) && this.start == start && this.interval == interval && this.priority == priority;
+	}
+
+	public double getPriority() {
+		return priority;
+	}
+
+	public Method getMethod() {
+		return method;
+	}
+
+	public ArrayList<Object> getTargetList() {
+		return targetList;
+	}
+
+	@Override
+	public String toString() {
+		return method.getDeclaringClass().getSimpleName() + "." + method.getName() + " (priority " + priority + ", " + targetList.size() + " targets)";
+	}
+}
@@ -0,0 +1,79 @@
+package power.engine;
+
+import java.lang.invoke.MethodHandle;
+
+import power.models.cores.DynamicModel;
+
+/**
+ * Compares the two ways a DynamicModel has read the properties of its source:
+ * looking the getter up and invoking it reflectively on every evaluation, as it
+ * used to, and invoking the accessor resolved once by
+ * {@link DynamicModel#createAccessor(Object, String)}. Both a getter returning
+ * a double and one returning a Double are timed.
+ *
+ * Usage: PropertyAccessBenchmark [evaluations]
+ */
+public class PropertyAccessBenchmark {
+
+	public static class Source {
+		private double value;
+
+		public double getValue() {
+			return value++;
+		}
+
+		public Double getBoxedValue() {
+			return value++;
+		}
+	}
+
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) throws Throwable {
+		int evaluations = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+
+		for (String property : new String[] { "getValue", "getBoxedValue" }) {
+			double reflectiveTime = Double.POSITIVE_INFINITY;
+			double accessorTime = Double.POSITIVE_INFINITY;
+			double reflectiveSum = 0;
+			double accessorSum = 0;
+			// the first rounds warm up both paths, the best round is reported
+			for (int round = 0; round < ROUNDS; round++) {
+				Source source = new Source();
+				long startTime = System.nanoTime();
+				reflectiveSum = evaluateReflectively(source, property, evaluations);
+				reflectiveTime = Math.min(reflectiveTime, System.nanoTime() - startTime);
+
+				source = new Source();
+				startTime = System.nanoTime();
+				accessorSum = evaluateAccessor(source, property, evaluations);
+				accessorTime = Math.min(accessorTime, System.nanoTime() - startTime);
+			}
+
+			if (reflectiveSum != accessorSum) {
+				System.err.println("The paths disagree on " + property + ": " + reflectiveSum + " and " + accessorSum);
+				System.exit(1);
+			}
+			System.out.println(property + ", evaluations: " + evaluations);
+			System.out.println("Reflective: " + reflectiveTime / 1e6 + " ms (" + reflectiveTime / evaluations + " ns/evaluation)");
+			System.out.println("Accessor: " + accessorTime / 1e6 + " ms (" + accessorTime / evaluations + " ns/evaluation)");
+		}
+	}
+
+	private static double evaluateReflectively(Object source, String property, int evaluations) throws Exception {
+		double sum = 0;
+		for (int index = 0; index < evaluations; index++) {
+			sum += ((Number) source.getClass().getMethod(property).invoke(source)).doubleValue();
+		}
+		return sum;
+	}
+
+	private static double evaluateAccessor(Object source, String property, int evaluations) throws Throwable {
+		MethodHandle accessor = DynamicModel.createAccessor(source, property);
+		double sum = 0;
+		for (int index = 0; index < evaluations; index++) {
+			sum += (double) accessor.invokeExact();
+		}
+		return sum;
+	}
+}
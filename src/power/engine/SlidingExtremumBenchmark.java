@@ -0,0 +1,116 @@
+package power.engine;
+
+import java.util.Collections;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import power.helpers.SlidingExtremum;
+import power.tools.Absolute;
+import power.tools.IAdjuster;
+
+/**
+ * Checks the recent max and min kept by {@link SlidingExtremum} against the
+ * boxed PriorityQueue AdjustedRunningMax used to keep, and times both, for
+ * recent windows from a day to a year of hours. The samples are rounded so
+ * that they tie often, and are passed through the same adjuster the demand
+ * windows use.
+ *
+ * Usage: SlidingExtremumBenchmark [samples]
+ */
+public class SlidingExtremumBenchmark {
+
+	private static final int[] WINDOW_SIZES = { 24, 168, 720, 2190, 8760 };
+	private static final int ROUNDS = 3;
+
+	public static void main(String[] args) {
+		int sampleCount = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+		IAdjuster adjuster = Absolute.getSingleton();
+
+		double[] samples = new double[sampleCount];
+		Random random = new Random(42);
+		for (int index = 0; index < sampleCount; index++) {
+			samples[index] = Math.round(random.nextGaussian() * 20) / 10.0;
+		}
+
+		for (int windowSize : WINDOW_SIZES) {
+			check(samples, windowSize, adjuster);
+
+			double heapTime = Double.POSITIVE_INFINITY;
+			double dequeTime = Double.POSITIVE_INFINITY;
+			for (int round = 0; round < ROUNDS; round++) {
+				long startTime = System.nanoTime();
+				double heapSum = runHeap(samples, windowSize, adjuster);
+				heapTime = Math.min(heapTime, System.nanoTime() - startTime);
+
+				startTime = System.nanoTime();
+				double dequeSum = runDeque(samples, windowSize, adjuster);
+				dequeTime = Math.min(dequeTime, System.nanoTime() - startTime);
+
+				if (heapSum != dequeSum) {
+					System.err.println("The recent max differs for a window of " + windowSize);
+					System.exit(1);
+				}
+			}
+			System.out.println("Window: " + windowSize + ", samples: " + sampleCount);
+			System.out.println("PriorityQueue: " + heapTime / 1e6 + " ms (" + heapTime / sampleCount + " ns/sample)");
+			System.out.println("SlidingExtremum: " + dequeTime / 1e6 + " ms (" + dequeTime / sampleCount + " ns/sample)");
+		}
+	}
+
+	/**
+	 * Compares the max and the min after every sample, ending the run at the
+	 * first difference.
+	 */
+	private static void check(double[] samples, int windowSize, IAdjuster adjuster) {
+		PriorityQueue<Double> maxHeap = new PriorityQueue<Double>(windowSize + 1, Collections.reverseOrder());
+		PriorityQueue<Double> minHeap = new PriorityQueue<Double>(windowSize + 1);
+		SlidingExtremum recentMax = new SlidingExtremum(windowSize + 1, true);
+		SlidingExtremum recentMin = new SlidingExtremum(windowSize + 1, false);
+
+		for (int index = 0; index < samples.length; index++) {
+			double value = adjuster.adjust(samples[index]);
+			maxHeap.add(value);
+			minHeap.add(value);
+			if (index >= windowSize) {
+				double leaving = adjuster.adjust(samples[index - windowSize]);
+				maxHeap.remove(leaving);
+				minHeap.remove(leaving);
+			}
+
+			recentMax.add(value);
+			recentMin.add(value);
+			recentMax.retain(Math.min(index + 1, windowSize));
+			recentMin.retain(Math.min(index + 1, windowSize));
+
+			if (maxHeap.peek() != recentMax.get() || minHeap.peek() != recentMin.get()) {
+				System.err.println("Window " + windowSize + ", sample " + index + ": the max is " + maxHeap.peek() + " and " + recentMax.get() + ", the min is " + minHeap.peek() + " and " + recentMin.get());
+				System.exit(1);
+			}
+		}
+		System.out.println("Window: " + windowSize + ", the max and min agree on " + samples.length + " samples");
+	}
+
+	private static double runHeap(double[] samples, int windowSize, IAdjuster adjuster) {
+		PriorityQueue<Double> maxHeap = new PriorityQueue<Double>(windowSize + 1, Collections.reverseOrder());
+		double sum = 0;
+		for (int index = 0; index < samples.length; index++) {
+			maxHeap.add(adjuster.adjust(samples[index]));
+			if (index >= windowSize) {
+				maxHeap.remove(adjuster.adjust(samples[index - windowSize]));
+			}
+			sum += maxHeap.peek();
+		}
+		return sum;
+	}
+
+	private static double runDeque(double[] samples, int windowSize, IAdjuster adjuster) {
+		SlidingExtremum recentMax = new SlidingExtremum(windowSize + 1, true);
+		double sum = 0;
+		for (int index = 0; index < samples.length; index++) {
+			recentMax.add(adjuster.adjust(samples[index]));
+			recentMax.retain(Math.min(index + 1, windowSize));
+			sum += recentMax.get();
+		}
+		return sum;
+	}
+}
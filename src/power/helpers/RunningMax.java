@@ -1,68 +1,70 @@
 package power.helpers;
 
-import java.util.Comparator;
-import java.util.PriorityQueue;
-
+import power.SimulationConfig;
 import power.SmartGridBuilder;
-import repast.simphony.essentials.RepastEssentials;
 
 public class RunningMax extends RunningMean {
 
-	protected final PriorityQueue<Double> recentMaxHeap;
+	protected final SlidingExtremum recentMax;
+	protected final SlidingExtremum recentMin;
 
-	public RunningMax() {
-		super();
-		recentMaxHeap = new PriorityQueue<Double>(SmartGridBuilder.getWindowSize() + 1, new Comparator<Double>() {
-			@Override
-			public int compare(Double o1, Double o2) {
-				if (o1 > o2) {
-					return -1;
-				} else if (o1 < o2) {
-					return 1;
-				} else {
-					return 0;
-				}
-			}
-		});
+	public RunningMax(SimulationConfig config) {
+		super(config);
+		recentMax = new SlidingExtremum(config.getPeriod() + 1, true);
+		recentMin = new SlidingExtremum(config.getPeriod() + 1, false);
 	}
 
 	@Override
 	public void add(double value) {
-		period = (int) RepastEssentials.GetTickCount() % SmartGridBuilder.getPeriod();
+		period = (int) SmartGridBuilder.getTickCount() % config.getPeriod();
 
 		window.add(value);
-		recentMaxHeap.add(value);
+		recentMax.add(value);
+		recentMin.add(value);
 
 		periodicSumList[period] += value;
 
-		if (window.size() > SmartGridBuilder.getPeriod()) {
-			double leaving = window.get(window.size() - SmartGridBuilder.getPeriod() - 1);
+		if (window.size() > config.getPeriod()) {
+			double leaving = window.get(window.size() - config.getPeriod() - 1);
 			recentSum += value - leaving;
-			recentMaxHeap.remove(leaving);
-
+			recentMoments.remove(leaving);
 		} else {
 			recentSum += value;
 		}
+		recentMoments.add(value);
 
 		windowSum += value;
+		windowMoments.add(value);
 
-		while (window.size() > SmartGridBuilder.getWindowSize()) {
+		while (window.size() > config.getWindowSize()) {
 			value = window.remove();
-			if (window.size() < SmartGridBuilder.getPeriod()) {
+			if (window.size() < config.getPeriod()) {
 				recentSum -= value;
-				recentMaxHeap.remove(value);
+				recentMoments.remove(value);
 			}
 
-			periodicSumList[(SmartGridBuilder.getPeriod() + (period - window.size()) % SmartGridBuilder.getPeriod()) % SmartGridBuilder.getPeriod()] -= value;
+			periodicSumList[(config.getPeriod() + (period - window.size()) % config.getPeriod()) % config.getPeriod()] -= value;
 			windowSum -= value;
+			windowMoments.remove(value);
 		}
+
+		recentMax.retain(getRecentSize());
+		recentMin.retain(getRecentSize());
 	}
 
 	public double getRecentMax() {
-		if (recentMaxHeap.isEmpty()) {
+		if (recentMax.isEmpty()) {
+			return 0;
+		} else {
+			return recentMax.get();
+		}
+	}
+
+	public double getRecentMin() {
+		if (recentMin.isEmpty()) {
 			return 0;
 		} else {
-			return recentMaxHeap.peek();
+			return recentMin.get();
 		}
 	}
 }
@@ -1,55 +1,67 @@
 package power.helpers;
 
+import power.SimulationConfig;
 import power.SmartGridBuilder;
-import power.tools.CycleQueue;
+import power.tools.DoubleRingBuffer;
 import power.tools.IAdjuster;
-import repast.simphony.essentials.RepastEssentials;
 
 public class RunningMean {
 	protected final double[] periodicSumList;
 	protected double recentSum;
 	protected double windowSum;
 
-	protected final CycleQueue<Double> window;
+	protected final RunningMoments recentMoments = new RunningMoments();
+	protected final RunningMoments windowMoments = new RunningMoments();
+
+	protected final DoubleRingBuffer window;
 
 	protected int period;
 
-	public RunningMean() {
-		window = new CycleQueue<Double>(SmartGridBuilder.getWindowSize() + 1);
-		periodicSumList = new double[(int) SmartGridBuilder.getPeriod()];
+	protected final SimulationConfig config;
+
+	public RunningMean(SimulationConfig config) {
+		this.config = config;
+		window = new DoubleRingBuffer(config.getWindowSize() + 1);
+		periodicSumList = new double[config.getPeriod()];
 		clearCache();
 	}
 
 	public void add(double value) {
-		period = (int) RepastEssentials.GetTickCount() % SmartGridBuilder.getPeriod();
+		period = (int) SmartGridBuilder.getTickCount() % config.getPeriod();
 
 		window.add(value);
 
 		periodicSumList[period] += value;
 
-		if (window.size() > SmartGridBuilder.getPeriod()) {
-			recentSum += value - window.get(window.size() - SmartGridBuilder.getPeriod() - 1);
+		if (window.size() > config.getPeriod()) {
+			double leaving = window.get(window.size() - config.getPeriod() - 1);
+			recentSum += value - leaving;
+			recentMoments.remove(leaving);
 		} else {
 			recentSum += value;
 		}
+		recentMoments.add(value);
 
 		windowSum += value;
+		windowMoments.add(value);
 
-		while (window.size() > SmartGridBuilder.getWindowSize()) {
+		while (window.size() > config.getWindowSize()) {
 			value = window.remove();
-			if (window.size() < SmartGridBuilder.getPeriod()) {
+			if (window.size() < config.getPeriod()) {
 				recentSum -= value;
+				recentMoments.remove(value);
 			}
 
-			periodicSumList[(SmartGridBuilder.getPeriod() + (period - window.size()) % SmartGridBuilder.getPeriod()) % SmartGridBuilder.getPeriod()] -= value;
+			periodicSumList[(config.getPeriod() + (period - window.size()) % config.getPeriod()) % config.getPeriod()] -= value;
 			windowSum -= value;
+			windowMoments.remove(value);
 		}
 	}
 
 	public double getPeriodMean(int foresight) {
-		foresight = foresight % SmartGridBuilder.getPeriod();
-		int numberOfValues = (window.size() + (foresight - SmartGridBuilder.getPeriod()) % SmartGridBuilder.getPeriod() - 1) / SmartGridBuilder.getPeriod() + 1;
-		int index = (period + foresight) % SmartGridBuilder.getPeriod();
+		foresight = foresight % config.getPeriod();
+		int numberOfValues = (window.size() + (foresight - config.getPeriod()) % config.getPeriod() - 1) / config.getPeriod() + 1;
+		int index = (period + foresight) % config.getPeriod();
 		return periodicSumList[index] / numberOfValues;
 	}
 
@@ -59,10 +71,10 @@ public class RunningMean {
 
 	public double getRecentMean() {
 		if (window.size() > 0) {
-			if (window.size() < SmartGridBuilder.getPeriod()) {
+			if (window.size() < config.getPeriod()) {
 				return recentSum / window.size();
 			} else {
-				return recentSum / SmartGridBuilder.getPeriod();
+				return recentSum / config.getPeriod();
 			}
 		} else {
 			return 0;
@@ -78,15 +90,35 @@ public class RunningMean {
 	}
 
 	public double getMean(int size) {
-		if (size == SmartGridBuilder.getPeriod() || (window.size() < SmartGridBuilder.getPeriod() && size == window.size())) {
+		if (size == config.getPeriod() || (window.size() < config.getPeriod() && size == window.size())) {
 			return getRecentMean();
-		} else if (size == SmartGridBuilder.getWindowSize() || (window.size() < SmartGridBuilder.getWindowSize() && size == window.size())) {
+		} else if (size == config.getWindowSize() || (window.size() < config.getWindowSize() && size == window.size())) {
 			return getWindowMean();
 		} else {
 			return recomputeSum(size) / Math.min(size, window.size());
 		}
 	}
 
+	/**
+	 * @return the sum of the squared deviations from the mean of the recent
+	 *         values, the same as recomputeVariance(period) but in O(1)
+	 */
+	public double getRecentVariance() {
+		return recentMoments.getSquaredDeviationSum();
+	}
+
+	public double getRecentStandardDev() {
+		return recentMoments.getStandardDev();
+	}
+
+	public double getWindowVariance() {
+		return windowMoments.getSquaredDeviationSum();
+	}
+
+	public double getWindowStandardDev() {
+		return windowMoments.getStandardDev();
+	}
+
 	public double recomputeVariance(int size) {
 		if (window.size() > 0 && size > 0) {
 			double sum = 0;
@@ -125,29 +157,27 @@ public class RunningMean {
 
 	protected double recomputePeriodicSum(int foresight) {
 		double sum = 0;
-		for (int index = window.size() + (foresight - SmartGridBuilder.getPeriod()) % SmartGridBuilder.getPeriod() - 1; index >= 0; index -= (int) SmartGridBuilder.getPeriod()) {
+		for (int index = window.size() + (foresight - config.getPeriod()) % config.getPeriod() - 1; index >= 0; index -= config.getPeriod()) {
 			sum += window.get(index);
 		}
 		return sum;
 	}
 
 	protected double recomputeSum(int size) {
-		double sum = 0;
-		for (int index = window.size() > size ? window.size() - size : 0; index < window.size(); index++) {
-			sum += window.get(index);
-		}
-		return sum;
+		return window.sum(window.size() > size ? window.size() - size : 0, window.size());
 	}
 
 	protected void clearCache() {
 		recentSum = 0;
 		windowSum = 0;
+		recentMoments.clear();
+		windowMoments.clear();
 		for (int index = 0; index < periodicSumList.length; index++) {
 			periodicSumList[index] = 0;
 		}
 	}
 
-	public CycleQueue<Double> getWindow() {
+	public DoubleRingBuffer getWindow() {
 		return window;
 	}
 
@@ -156,10 +186,10 @@ public class RunningMean {
 	}
 
 	public int getRecentSize() {
-		if (window.size() < SmartGridBuilder.getPeriod()) {
+		if (window.size() < config.getPeriod()) {
 			return window.size();
 		} else {
-			return SmartGridBuilder.getPeriod();
+			return config.getPeriod();
 		}
 	}
 }
@@ -0,0 +1,88 @@
+package power.helpers;
+
+/**
+ * The mean and the sum of squared deviations of a sliding set of values, in
+ * O(1) per value entering or leaving. The sums are taken of the values less a
+ * reference value, the first one added, which keeps the squared sum from
+ * cancelling catastrophically against the squared mean, and they are Kahan
+ * compensated so that the error does not build up over a long run.
+ */
+public class RunningMoments {
+	private int count;
+	private double reference;
+
+	private double sum;
+	private double sumError;
+	private double squaredSum;
+	private double squaredSumError;
+
+	public void add(double value) {
+		if (count == 0) {
+			reference = value;
+		}
+		count++;
+		accumulate(value - reference);
+	}
+
+	public void remove(double value) {
+		if (count <= 1) {
+			clear();
+		} else {
+			count--;
+			double deviation = value - reference;
+			accumulate(-deviation, -deviation * deviation);
+		}
+	}
+
+	public void clear() {
+		count = 0;
+		sum = 0;
+		sumError = 0;
+		squaredSum = 0;
+		squaredSumError = 0;
+	}
+
+	private void accumulate(double deviation) {
+		accumulate(deviation, deviation * deviation);
+	}
+
+	private void accumulate(double deviation, double squaredDeviation) {
+		double term = deviation - sumError;
+		double total = sum + term;
+		sumError = (total - sum) - term;
+		sum = total;
+
+		term = squaredDeviation - squaredSumError;
+		total = squaredSum + term;
+		squaredSumError = (total - squaredSum) - term;
+		squaredSum = total;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public double getMean() {
+		if (count > 0) {
+			return reference + sum / count;
+		} else {
+			return 0;
+		}
+	}
+
+	public double getSquaredDeviationSum() {
+		if (count > 0) {
+			return Math.max(0, squaredSum - sum * sum / count);
+		} else {
+			return 0;
+		}
+	}
+
+	public double getStandardDev() {
+		if (count > 0) {
+			return Math.sqrt(getSquaredDeviationSum() / (count - 1));
+		} else {
+			return 0;
+		}
+	}
+}
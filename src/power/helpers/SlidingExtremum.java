@@ -0,0 +1,84 @@
+package power.helpers;
+
+/**
+ * The maximum (or minimum) of the most recent values of a stream, kept in a
+ * monotonic deque of primitive doubles. Every value enters and leaves the
+ * deque at most once, so adding a value costs O(1) amortized and reading the
+ * extremum costs O(1).
+ */
+public class SlidingExtremum {
+	private final boolean isMax;
+
+	private double[] values;
+	private long[] sequences;
+	private int mask;
+	private int head;
+	private int size;
+
+	// the number of values added so far
+	private long count;
+
+	public SlidingExtremum(int capacity, boolean isMax) {
+		int length = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+		this.values = new double[length];
+		this.sequences = new long[length];
+		this.mask = length - 1;
+		this.isMax = isMax;
+	}
+
+	public void add(double value) {
+		// drop the values which can no longer be the extremum
+		while (size > 0 && dominates(value, values[(head + size - 1) & mask])) {
+			size--;
+		}
+		if (size == values.length) {
+			increaseCapacity();
+		}
+		int tail = (head + size) & mask;
+		values[tail] = value;
+		sequences[tail] = count++;
+		size++;
+	}
+
+	/**
+	 * Forgets every value but the last recentSize ones.
+	 */
+	public void retain(int recentSize) {
+		long first = count - recentSize;
+		while (size > 0 && sequences[head] < first) {
+			head = (head + 1) & mask;
+			size--;
+		}
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public double get() {
+		return values[head];
+	}
+
+	public void clear() {
+		head = 0;
+		size = 0;
+		count = 0;
+	}
+
+	private boolean dominates(double value, double other) {
+		return isMax ? value >= other : value <= other;
+	}
+
+	private void increaseCapacity() {
+		double[] newValues = new double[2 * values.length];
+		long[] newSequences = new long[2 * values.length];
+		for (int index = 0; index < size; index++) {
+			newValues[index] = values[(head + index) & mask];
+			newSequences[index] = sequences[(head + index) & mask];
+		}
+		values = newValues;
+		sequences = newSequences;
+		mask = newValues.length - 1;
+		head = 0;
+	}
+}
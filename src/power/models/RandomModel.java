@@ -4,6 +4,7 @@ import org.w3c.dom.Node;
 
 import cern.jet.random.Normal;
 
+import power.SmartGridBuilder;
 import power.components.BlankReliability;
 import power.components.IReliability;
 import power.components.Reliability;
@@ -13,8 +14,6 @@ import power.models.cores.Model;
 import power.tools.Adjuster;
 import power.tools.IAdjuster;
 import power.tools.IDescribable;
-import repast.simphony.engine.environment.RunEnvironment;
-import repast.simphony.engine.schedule.ScheduleParameters;
 
 public class RandomModel implements IRandomModel {
 
@@ -87,13 +86,6 @@ public class RandomModel implements IRandomModel {
 		this.standardDeviation = standardDeviation;
 
 		this.costFactor = costFactor;
-		
-		ScheduleParameters scheduleParams = ScheduleParameters.createRepeating(0, 1, ScheduleParameters.FIRST_PRIORITY);
-		RunEnvironment.getInstance().getCurrentSchedule().schedule(scheduleParams, this, "reset");
-	}
-	
-	public void reset() {
-		currentValue = null;
 	}
 
 	@Override
@@ -103,7 +95,9 @@ public class RandomModel implements IRandomModel {
 		return model.getMeanSeedValue() * meanValue;
 	}
 
-	private Double currentValue;
+	// the value of the current tick, once it has been drawn
+	private double currentValue;
+	private long currentEpoch = -1;
 
 	@Override
 	public double getCurrentValue() {
@@ -111,7 +105,9 @@ public class RandomModel implements IRandomModel {
 		if (!reliability.isOperational())
 			return 0.0;
 
-		if (currentValue == null) {
+		long epoch = SmartGridBuilder.getTickEpoch().get();
+		if (currentEpoch != epoch) {
+			currentEpoch = epoch;
 			currentValue = Normal.staticNextDouble(model.getValue(), standardDeviation) * meanValue;
 
 			if (adjuster != null) {
@@ -0,0 +1,26 @@
+package power.models;
+
+import power.SmartGridBuilder;
+import repast.simphony.engine.schedule.ScheduleParameters;
+
+/**
+ * A count of the ticks which have begun, for values which are computed at most
+ * once per tick. Such a value keeps the epoch it was computed in next to it and
+ * is stale as soon as the epoch has moved on, so that nothing has to be
+ * scheduled per value to clear it. The epoch moves on first thing every tick.
+ */
+public class TickEpoch {
+	private long epoch;
+
+	public TickEpoch() {
+		SmartGridBuilder.scheduleRepeating(this, "advance", ScheduleParameters.FIRST_PRIORITY);
+	}
+
+	public void advance() {
+		epoch++;
+	}
+
+	public long get() {
+		return epoch;
+	}
+}
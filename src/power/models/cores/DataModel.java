@@ -10,7 +10,6 @@ import power.helpers.XmlTools;
 
 import com.google.gson.Gson;
 
-import repast.simphony.essentials.RepastEssentials;
 
 public class DataModel extends Model {
 	private enum XmlNode { Data }
@@ -46,7 +45,7 @@ public class DataModel extends Model {
 	@Override
 	public double getValue() {
 		if (data.length > 0) {
-			return data[(int)RepastEssentials.GetTickCount() % data.length];
+			return data[(int) SmartGridBuilder.getTickCount() % data.length];
 		} else {
 			return 0;
 		}
@@ -1,5 +1,9 @@
 package power.models.cores;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
 import java.util.Arrays;
 
 import power.tools.IAdjuster;
@@ -42,29 +46,96 @@ public abstract class DynamicModel extends Model {
 	}
 	
 	private final Property[] propertyList;
+	// the getter of every property, bound to the source
+	private final MethodHandle[] accessorList;
 	
 	public DynamicModel(Property[] propertyList) {
 		this.propertyList = propertyList;
+		this.accessorList = propertyList == null ? null : new MethodHandle[propertyList.length];
 		source = null;
 	}
 	
-	protected double getPropertyValue(int propertyIndex) {
+	/**
+	 * Resolves the getter of every property on the source once, so that
+	 * evaluating the model neither looks the getters up nor boxes their values.
+	 * A property the source has no numeric getter for ends the simulation.
+	 */
+	@Override
+	public void setSource(Object source) {
+		super.setSource(source);
+		if (accessorList != null) {
+			for (int index = 0; index < accessorList.length; index++) {
+				accessorList[index] = source == null ? null : createAccessor(source, propertyList[index].getProperty());
+			}
+		}
+	}
+	
+	/**
+	 * @return a handle taking no arguments which returns the value of the
+	 *         property of the source as a double. The getter has to return a
+	 *         primitive number or a Number; anything else, such as a void
+	 *         method, ends the simulation.
+	 */
+	public static MethodHandle createAccessor(Object source, String property) {
+		Method method = null;
 		try {
-			if (source != null && propertyList != null && propertyIndex < propertyList.length) {
-				if (propertyList[propertyIndex].getAdjuster() != null) {
-					return propertyList[propertyIndex].getAdjuster().adjust((Double) source.getClass().getMethod(propertyList[propertyIndex].getProperty()).invoke(source));
-				} else {
-					return (Double) source.getClass().getMethod(propertyList[propertyIndex].getProperty()).invoke(source);
-				}
-			} else {
-				System.err.println("ExponentialFunctionModel: has not been initialized propertly.");
-				System.err.println("Source: " + source + ", propertyList: " + Arrays.toString(propertyList));
-				return Double.NaN;
+			method = source.getClass().getMethod(property);
+		} catch (Exception e) { // poor error handling
+			System.err.println("DynamicModel: " + source.getClass().getName() + " has no numeric property " + property);
+			e.printStackTrace();
+			System.exit(1);
+		}
+
+		Class<?> type = method.getReturnType();
+		if (!isNumeric(type)) {
+			System.err.println("DynamicModel: the property " + property + " of " + source.getClass().getName() + " is of type " + type.getName() + ", which is not numeric");
+			(new Exception()).printStackTrace();
+			System.exit(1);
+		}
+
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			MethodHandle getter = lookup.unreflect(method).bindTo(source);
+			if (type.isPrimitive()) {
+				return getter.asType(MethodType.methodType(double.class));
 			}
-		} catch (Exception e) {
+			// a Number which is not a wrapper of a primitive cannot be unboxed
+			MethodHandle doubleValue = lookup.findVirtual(Number.class, "doubleValue", MethodType.methodType(double.class));
+			return MethodHandles.filterReturnValue(getter.asType(MethodType.methodType(Number.class)), doubleValue);
+		} catch (Exception e) { // poor error handling
+			System.err.println("DynamicModel: unable to access the property " + property + " of " + source.getClass().getName());
 			e.printStackTrace();
+			System.exit(1);
+		}
+		return null;
+	}
+
+	private static boolean isNumeric(Class<?> type) {
+		if (type.isPrimitive()) {
+			return type != void.class && type != boolean.class && type != char.class;
+		}
+		return Number.class.isAssignableFrom(type);
+	}
+	
+	protected double getPropertyValue(int propertyIndex) {
+		if (source != null && propertyList != null && propertyIndex < propertyList.length) {
+			double value;
+			try {
+				value = (double) accessorList[propertyIndex].invokeExact();
+			} catch (Throwable e) {
+				e.printStackTrace();
+				return Double.NaN;
+			}
+			if (propertyList[propertyIndex].getAdjuster() != null) {
+				return propertyList[propertyIndex].getAdjuster().adjust(value);
+			} else {
+				return value;
+			}
+		} else {
+			System.err.println("ExponentialFunctionModel: has not been initialized propertly.");
+			System.err.println("Source: " + source + ", propertyList: " + Arrays.toString(propertyList));
+			return Double.NaN;
 		}
-		return Double.NaN;
 	}
 	
 	@Override
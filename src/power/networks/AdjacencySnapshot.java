@@ -0,0 +1,131 @@
+package power.networks;
+
+import java.util.ArrayList;
+
+import power.components.Agent;
+import repast.simphony.space.graph.Network;
+
+/**
+ * The agents of the network and their neighbors in compressed sparse row
+ * form. Every agent is given an index, and the indices of the neighbors of the
+ * agent with index i are neighbors[offsets[i]] to neighbors[offsets[i + 1] - 1].
+ * Walking the neighbors this way neither allocates nor goes through the
+ * projection of the network.
+ *
+ * The direction of an edge is ignored, since it only records who sold to whom
+ * last, so turning an edge around leaves the snapshot valid. Any other change
+ * to the network has to be followed by SmartGridBuilder.invalidateAdjacency().
+ *
+ * An agent keeps its index when the snapshot is rebuilt, so that whatever is
+ * kept by agent index, such as the outages, stays valid. An agent added to the
+ * network is given the next unused index, and the index of an agent removed
+ * from it is left empty: its slot has no agent and no neighbors.
+ */
+public class AdjacencySnapshot {
+	private final Agent[] agents;
+	private final int[] offsets;
+	private final int[] neighbors;
+
+	public static AdjacencySnapshot create(Network<Object> network) {
+		return create(network, null);
+	}
+
+	/**
+	 * @param previous
+	 *            the snapshot being rebuilt, whose indices are kept, or null
+	 */
+	public static AdjacencySnapshot create(Network<Object> network, AdjacencySnapshot previous) {
+		int previousSize = previous == null ? 0 : previous.size();
+		ArrayList<Agent> keptList = new ArrayList<Agent>();
+		ArrayList<Agent> addedList = new ArrayList<Agent>();
+		for (Object node : network.getNodes()) {
+			if (node instanceof Agent) {
+				Agent agent = (Agent) node;
+				int index = agent.getNetworkIndex();
+				if (index >= 0 && index < previousSize && previous.getAgent(index) == agent) {
+					keptList.add(agent);
+				} else {
+					addedList.add(agent);
+				}
+			}
+		}
+		Agent[] agents = new Agent[previousSize + addedList.size()];
+		for (Agent agent : keptList) {
+			agents[agent.getNetworkIndex()] = agent;
+		}
+		for (int index = 0; index < addedList.size(); index++) {
+			addedList.get(index).setNetworkIndex(previousSize + index);
+			agents[previousSize + index] = addedList.get(index);
+		}
+
+		int[] offsets = new int[agents.length + 1];
+		int[] neighbors = new int[16];
+		int size = 0;
+		for (int index = 0; index < agents.length; index++) {
+			offsets[index] = size;
+			if (agents[index] == null) {
+				continue;
+			}
+			for (Object node : network.getAdjacent(agents[index])) {
+				if (node instanceof Agent) {
+					if (size == neighbors.length) {
+						int[] newNeighbors = new int[2 * neighbors.length];
+						System.arraycopy(neighbors, 0, newNeighbors, 0, size);
+						neighbors = newNeighbors;
+					}
+					neighbors[size++] = ((Agent) node).getNetworkIndex();
+				}
+			}
+		}
+		offsets[agents.length] = size;
+
+		int[] trimmedNeighbors = new int[size];
+		System.arraycopy(neighbors, 0, trimmedNeighbors, 0, size);
+		return new AdjacencySnapshot(agents, offsets, trimmedNeighbors);
+	}
+
+	private AdjacencySnapshot(Agent[] agents, int[] offsets, int[] neighbors) {
+		this.agents = agents;
+		this.offsets = offsets;
+		this.neighbors = neighbors;
+	}
+
+	/**
+	 * @return the number of indices, including those left empty
+	 */
+	public int size() {
+		return agents.length;
+	}
+
+	/**
+	 * @return the agent with the index, or null if it was removed
+	 */
+	public Agent getAgent(int index) {
+		return agents[index];
+	}
+
+	public int getDegree(int index) {
+		return offsets[index + 1] - offsets[index];
+	}
+
+	/**
+	 * @return the position of the first neighbor of the agent with the index
+	 */
+	public int getFirstNeighbor(int index) {
+		return offsets[index];
+	}
+
+	/**
+	 * @return the position after the last neighbor of the agent with the index
+	 */
+	public int getLastNeighbor(int index) {
+		return offsets[index + 1];
+	}
+
+	/**
+	 * @return the index of the agent at the position in the neighbor lists
+	 */
+	public int getNeighbor(int position) {
+		return neighbors[position];
+	}
+}
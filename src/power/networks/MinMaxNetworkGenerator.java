@@ -1,5 +1,7 @@
 package power.networks;
 
+import java.util.ArrayList;
+
 import repast.simphony.random.RandomHelper;
 import repast.simphony.space.graph.Network;
 import repast.simphony.context.space.graph.NetworkGenerator;
@@ -10,7 +12,43 @@ public class MinMaxNetworkGenerator<T> implements NetworkGenerator<T> {
 	private int maxDegree;
 	private int maxNumberOfRounds;
 	private boolean isConnected;
+	private boolean isIndexed;
 	
+	/**
+	 * Nodes kept by index in an array, with the position of every node in the
+	 * array, so that a node is picked at random, added or removed in O(1).
+	 */
+	private static class IndexedSet {
+		private final int[] members;
+		private final int[] positions;
+		private int size;
+
+		public IndexedSet(int capacity) {
+			members = new int[capacity];
+			positions = new int[capacity];
+		}
+
+		public void add(int node) {
+			positions[node] = size;
+			members[size++] = node;
+		}
+
+		public void remove(int node) {
+			int position = positions[node];
+			int last = members[--size];
+			members[position] = last;
+			positions[last] = position;
+		}
+
+		public int get(int position) {
+			return members[position];
+		}
+
+		public int size() {
+			return size;
+		}
+	}
+
 	public MinMaxNetworkGenerator(int minDegree, int maxDegree, boolean isConnected) {
 		initialize(minDegree, maxDegree, isConnected);
 		this.maxNumberOfRounds = (int)Math.ceil((this.maxDegree - this.minDegree) / 2.0);
@@ -20,6 +58,17 @@ public class MinMaxNetworkGenerator<T> implements NetworkGenerator<T> {
 		initialize(minDegree, maxDegree, isConnected);
 		this.maxNumberOfRounds = maxNumberOfRounds;
 	}
+
+	/**
+	 * @param isIndexed
+	 *            whether the network is built by
+	 *            {@link #createIndexedNetwork(Network)}, which scales to large
+	 *            networks but draws different edges from the same seed
+	 */
+	public MinMaxNetworkGenerator(int minDegree, int maxDegree, int maxNumberOfRounds, boolean isConnected, boolean isIndexed) {
+		this(minDegree, maxDegree, maxNumberOfRounds, isConnected);
+		this.isIndexed = isIndexed;
+	}
 	
 	private void initialize(int minDegree, int maxDegree, boolean isConnected) {
 		if (maxDegree < minDegree) {
@@ -41,6 +90,9 @@ public class MinMaxNetworkGenerator<T> implements NetworkGenerator<T> {
 	
 	@Override
 	public Network<T> createNetwork(Network<T> network) {
+		if (isIndexed) {
+			return createIndexedNetwork(network);
+		}
 		
 		int numberOfNodes = 0, numberOfMaxDegree = 0, numberOfSufficientDegree = 0;
 		if (isConnected) {
@@ -169,4 +221,171 @@ public class MinMaxNetworkGenerator<T> implements NetworkGenerator<T> {
 		}
 		return network;
 	}
+
+	/*
+	 * Indexed construction
+	 */
+	private int[] degrees;
+	private int[] neighbors;
+	private int[] edges;
+	private int edgeCount;
+	private IndexedSet underMinSet;
+	private IndexedSet underMaxSet;
+
+	/**
+	 * Builds the same kind of network as the scan over all the nodes: a
+	 * connected backbone if asked for, then random edges until every node
+	 * has minDegree neighbors, then up to maxNumberOfRounds random edges per
+	 * node, never exceeding maxDegree. The nodes are numbered, the nodes still
+	 * under the minimum and under the maximum degree are kept in indexed sets
+	 * to draw from, and the edges are collected in an edge list which is
+	 * loaded into the network at the end, so that building the network takes
+	 * time in proportion to the number of edges.
+	 */
+	public Network<T> createIndexedNetwork(Network<T> network) {
+		ArrayList<T> nodeList = new ArrayList<T>();
+		for (T node : network.getNodes()) {
+			nodeList.add(node);
+		}
+		int numberOfNodes = nodeList.size();
+
+		degrees = new int[numberOfNodes];
+		neighbors = new int[numberOfNodes * maxDegree];
+		edges = new int[2 * numberOfNodes];
+		edgeCount = 0;
+		underMinSet = new IndexedSet(numberOfNodes);
+		underMaxSet = new IndexedSet(numberOfNodes);
+		for (int node = 0; node < numberOfNodes; node++) {
+			if (minDegree > 0) {
+				underMinSet.add(node);
+			}
+			underMaxSet.add(node);
+		}
+
+		if (isConnected) {
+			int core = -1;
+			int counter = maxDegree;
+			for (int current = 0; current < numberOfNodes; current++) {
+				if (core != -1) {
+					addEdge(core, current);
+				} else {
+					core = current;
+				}
+				if (counter == 0) {
+					counter = maxDegree - 1;
+					core = current;
+				}
+				counter--;
+			}
+		}
+
+		for (int first = 0; first < numberOfNodes; first++) {
+			while (degrees[first] < minDegree) {
+				int second = pickCandidate(underMinSet, first);
+				if (second == -1) {
+					break;
+				}
+				addEdge(first, second);
+			}
+		}
+
+		if (underMaxSet.size() > 1) {
+			for (int first = 0; first < numberOfNodes; first++) {
+				int numberOfRounds = RandomHelper.nextIntFromTo(0, maxNumberOfRounds);
+				for (int round = 0; round < numberOfRounds && degrees[first] < maxDegree; round++) {
+					int second = pickCandidate(underMaxSet, first);
+					if (second == -1) {
+						break;
+					}
+					addEdge(first, second);
+				}
+			}
+		}
+
+		for (int edge = 0; edge < edgeCount; edge++) {
+			network.addEdge(nodeList.get(edges[2 * edge]), nodeList.get(edges[2 * edge + 1]));
+		}
+
+		degrees = null;
+		neighbors = null;
+		edges = null;
+		underMinSet = null;
+		underMaxSet = null;
+		return network;
+	}
+
+	/**
+	 * @return a node of the set drawn uniformly among those which are neither
+	 *         the first node nor adjacent to it, or -1 if there is none
+	 */
+	private int pickCandidate(IndexedSet candidateSet, int first) {
+		// at most degree + 1 members are excluded, so while the set is much
+		// larger than that a few draws find an eligible one
+		int excluded = degrees[first] + 1;
+		if (candidateSet.size() > 2 * excluded) {
+			while (true) {
+				int candidate = candidateSet.get(RandomHelper.nextIntFromTo(0, candidateSet.size() - 1));
+				if (candidate != first && !isAdjacent(first, candidate)) {
+					return candidate;
+				}
+			}
+		}
+
+		int numberOfOptions = 0;
+		for (int position = 0; position < candidateSet.size(); position++) {
+			int candidate = candidateSet.get(position);
+			if (candidate != first && !isAdjacent(first, candidate)) {
+				numberOfOptions++;
+			}
+		}
+		if (numberOfOptions == 0) {
+			return -1;
+		}
+		int target = RandomHelper.nextIntFromTo(0, numberOfOptions - 1);
+		for (int position = 0; position < candidateSet.size(); position++) {
+			int candidate = candidateSet.get(position);
+			if (candidate != first && !isAdjacent(first, candidate)) {
+				if (target == 0) {
+					return candidate;
+				}
+				target--;
+			}
+		}
+		return -1;
+	}
+
+	private boolean isAdjacent(int first, int second) {
+		int offset = first * maxDegree;
+		for (int index = offset; index < offset + degrees[first]; index++) {
+			if (neighbors[index] == second) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void addEdge(int first, int second) {
+		if (2 * edgeCount + 2 > edges.length) {
+			int[] newEdges = new int[2 * edges.length];
+			System.arraycopy(edges, 0, newEdges, 0, 2 * edgeCount);
+			edges = newEdges;
+		}
+		edges[2 * edgeCount] = first;
+		edges[2 * edgeCount + 1] = second;
+		edgeCount++;
+
+		addNeighbor(first, second);
+		addNeighbor(second, first);
+	}
+
+	private void addNeighbor(int node, int neighbor) {
+		neighbors[node * maxDegree + degrees[node]] = neighbor;
+		degrees[node]++;
+		if (degrees[node] == minDegree) {
+			underMinSet.remove(node);
+		}
+		if (degrees[node] == maxDegree) {
+			underMaxSet.remove(node);
+		}
+	}
 }
@@ -0,0 +1,121 @@
+package power.tools;
+
+import repast.simphony.random.RandomHelper;
+
+/**
+ * Draws an index with probability proportional to its weight in O(1), using
+ * the alias method of Walker (as built by Vose). The tables are built once
+ * for a set of weights, in O(n), and reused for every draw until the weights
+ * change, so that no distribution object is made per draw.
+ */
+public class DiscreteSampler {
+	// the probability of keeping the column drawn rather than its alias
+	private final double[] probability;
+	private final int[] alias;
+
+	// work lists of the construction
+	private final int[] small;
+	private final int[] large;
+
+	public DiscreteSampler(int size) {
+		probability = new double[size];
+		alias = new int[size];
+		small = new int[size];
+		large = new int[size];
+		rebuild(null);
+	}
+
+	public int size() {
+		return probability.length;
+	}
+
+	/**
+	 * @param weights
+	 *            the weight of every index, none of which may be negative or
+	 *            NaN, adding up to a finite positive number; when null every
+	 *            index is equally likely
+	 */
+	public void rebuild(double[] weights) {
+		int size = probability.length;
+		if (weights == null) {
+			for (int index = 0; index < size; index++) {
+				probability[index] = 1;
+				alias[index] = index;
+			}
+			return;
+		}
+
+		double total = 0;
+		for (int index = 0; index < size; index++) {
+			if (!(weights[index] >= 0)) {
+				throw new IllegalArgumentException("The weight of index " + index + " is " + weights[index]);
+			}
+			total += weights[index];
+		}
+		if (!(total > 0) || Double.isInfinite(total)) {
+			throw new IllegalArgumentException("The weights add up to " + total);
+		}
+
+		int smallCount = 0;
+		int largeCount = 0;
+		for (int index = 0; index < size; index++) {
+			probability[index] = weights[index] * size / total;
+			alias[index] = index;
+			if (probability[index] < 1) {
+				small[smallCount++] = index;
+			} else {
+				large[largeCount++] = index;
+			}
+		}
+		while (smallCount > 0 && largeCount > 0) {
+			int less = small[--smallCount];
+			int more = large[--largeCount];
+			alias[less] = more;
+			probability[more] = (probability[more] + probability[less]) - 1;
+			if (probability[more] < 1) {
+				small[smallCount++] = more;
+			} else {
+				large[largeCount++] = more;
+			}
+		}
+		// whatever is left over is only off one by rounding
+		while (largeCount > 0) {
+			probability[large[--largeCount]] = 1;
+		}
+		while (smallCount > 0) {
+			probability[small[--smallCount]] = 1;
+		}
+	}
+
+	/**
+	 * Draws one index from each of the samplers, e.g. one action for each of
+	 * many plants, into the matching entry of result.
+	 *
+	 * Note: The auctioneers do not use this yet, on purpose. A plant draws its
+	 * action while placing its bid, between the draws of its quantity models,
+	 * and not every plant learns, so drawing all actions up front would
+	 * reorder the shared random stream and change the results.
+	 */
+	public static void sample(DiscreteSampler[] samplerList, int[] result) {
+		if (result.length < samplerList.length) {
+			throw new IllegalArgumentException("There are " + samplerList.length + " samplers but room for " + result.length + " indices");
+		}
+		for (int index = 0; index < samplerList.length; index++) {
+			result[index] = samplerList[index].sample(RandomHelper.nextDouble());
+		}
+	}
+
+	public int sample() {
+		return sample(RandomHelper.nextDouble());
+	}
+
+	/**
+	 * @param uniform
+	 *            a uniform random number in [0, 1)
+	 */
+	public int sample(double uniform) {
+		double scaled = uniform * probability.length;
+		int column = Math.min((int) scaled, probability.length - 1);
+		return scaled - column < probability[column] ? column : alias[column];
+	}
+}
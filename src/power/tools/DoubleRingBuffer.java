@@ -0,0 +1,106 @@
+package power.tools;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A CycleQueue of primitive doubles. The capacity is kept at a power of two
+ * so that a position is found by masking rather than by a modulo.
+ */
+public class DoubleRingBuffer {
+	private int start = 0;
+	private int size = 0;
+	private int mask;
+	private double[] list;
+
+	public DoubleRingBuffer() {
+		this(16);
+	}
+
+	public DoubleRingBuffer(int capacity) {
+		int length = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+		list = new double[length];
+		mask = length - 1;
+	}
+
+	public void add(double element) {
+		if (size == list.length) {
+			increaseCapacity();
+		}
+		list[(start + size) & mask] = element;
+		size++;
+	}
+
+	public double remove() {
+		if (size > 0) {
+			double element = list[start];
+			start = (start + 1) & mask;
+			size--;
+			return element;
+		} else {
+			throw new NoSuchElementException();
+		}
+	}
+
+	public double get(int index) {
+		if (index < size) {
+			return list[(start + index) & mask];
+		} else {
+			throw new IndexOutOfBoundsException();
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		start = 0;
+		size = 0;
+	}
+
+	/**
+	 * @return the sum of the elements from index from (inclusive) to index to
+	 *         (exclusive)
+	 */
+	public double sum(int from, int to) {
+		double sum = 0;
+		int first = (start + from) & mask;
+		int length = to - from;
+		int head = Math.min(length, list.length - first);
+		for (int index = first; index < first + head; index++) {
+			sum += list[index];
+		}
+		for (int index = 0; index < length - head; index++) {
+			sum += list[index];
+		}
+		return sum;
+	}
+
+	/**
+	 * Copies the elements from index from (inclusive) on into the target, in
+	 * at most two bulk copies.
+	 */
+	public void copyTo(int from, double[] target, int targetIndex, int length) {
+		if (from + length > size) {
+			throw new IndexOutOfBoundsException();
+		}
+		int first = (start + from) & mask;
+		int head = Math.min(length, list.length - first);
+		System.arraycopy(list, first, target, targetIndex, head);
+		System.arraycopy(list, 0, target, targetIndex + head, length - head);
+	}
+
+	public double[] toArray() {
+		double[] array = new double[size];
+		copyTo(0, array, 0, size);
+		return array;
+	}
+
+	private void increaseCapacity() {
+		double[] newList = new double[2 * list.length];
+		copyTo(0, newList, 0, size);
+		list = newList;
+		mask = newList.length - 1;
+		start = 0;
+	}
+}
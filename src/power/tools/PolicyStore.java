@@ -0,0 +1,178 @@
+package power.tools;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * What the power plants have learned, kept by plant name in a compact binary
+ * file so that a run can start from the policies an earlier run ended with.
+ * The file is memory mapped both when it is read, once when the store is
+ * opened, and when it is written, on every checkpoint. A checkpoint is
+ * written to a temporary file first and then moved over the store, so that a
+ * run stopped mid-checkpoint leaves the previous checkpoint intact.
+ * 
+ * The layout is: the magic number, the version and the number of plants,
+ * then for every plant its name (a length and UTF-8 bytes) followed by one
+ * array of doubles (a length and the values) for every section.
+ */
+public class PolicyStore {
+	public enum Section {
+		ScalingFactor, // the markup of every hour of the period
+		QValue, // the Q-values of every hour, state and action
+		Probability, // the probability of every action
+		Propensity // the propensity of every action, and its offset, per hour
+	}
+
+	private static final int MAGIC = 0x504f4c59; // POLY
+	private static final int VERSION = 1;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final File file;
+	private final HashMap<String, double[][]> policyMap = new HashMap<String, double[][]>();
+	// the names of the plants of this run which keep their policies here
+	private final HashSet<String> plantNameSet = new HashSet<String>();
+
+	/**
+	 * Opens the store kept in the given file, reading the policies in it if the
+	 * file exists.
+	 */
+	public static PolicyStore open(String fileName) {
+		PolicyStore store = new PolicyStore(new File(fileName));
+		if (store.file.exists()) {
+			store.read();
+		}
+		return store;
+	}
+
+	private PolicyStore(File file) {
+		this.file = file;
+	}
+
+	/**
+	 * Reserves the name for a plant which keeps its policy in the store, since
+	 * the policies are kept by name.
+	 * 
+	 * @return false if another plant of the run already has the name
+	 */
+	public boolean register(String plantName) {
+		return plantNameSet.add(plantName);
+	}
+
+	/**
+	 * @return the stored values of the section of the plant, or null if none
+	 *         are stored
+	 */
+	public double[] get(String plantName, Section section) {
+		double[][] policy = policyMap.get(plantName);
+		return policy != null ? policy[section.ordinal()] : null;
+	}
+
+	/**
+	 * @return whether the values of the section are stored for the plant with
+	 *         the given length, so that they fit what the plant holds
+	 */
+	public boolean has(String plantName, Section section, int length) {
+		double[] values = get(plantName, section);
+		return values != null && values.length == length;
+	}
+
+	/**
+	 * Keeps a copy of the values until the next save.
+	 */
+	public void put(String plantName, Section section, double[] values) {
+		double[][] policy = policyMap.get(plantName);
+		if (policy == null) {
+			policy = new double[Section.values().length][];
+			policyMap.put(plantName, policy);
+		}
+		policy[section.ordinal()] = values.clone();
+	}
+
+	private void read() {
+		try {
+			RandomAccessFile input = new RandomAccessFile(file, "r");
+			try {
+				MappedByteBuffer buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+				if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+					throw new IllegalStateException("Not a policy store of version " + VERSION);
+				}
+				int plantCount = buffer.getInt();
+				for (int plant = 0; plant < plantCount; plant++) {
+					byte[] name = new byte[buffer.getInt()];
+					buffer.get(name);
+					double[][] policy = new double[Section.values().length][];
+					for (int section = 0; section < policy.length; section++) {
+						int length = buffer.getInt();
+						if (length >= 0) {
+							policy[section] = new double[length];
+							buffer.asDoubleBuffer().get(policy[section]);
+							buffer.position(buffer.position() + length * 8);
+						}
+					}
+					policyMap.put(new String(name, UTF8), policy);
+				}
+			} finally {
+				input.close();
+			}
+		} catch (Exception e) { // poor error handling
+			System.err.println("Unable to read the policy store: " + file);
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Writes every policy in the store to its file.
+	 */
+	public void save() {
+		long size = 12;
+		for (Map.Entry<String, double[][]> entry : policyMap.entrySet()) {
+			size += 4 + entry.getKey().getBytes(UTF8).length;
+			for (double[] values : entry.getValue()) {
+				size += 4 + (values != null ? 8L * values.length : 0);
+			}
+		}
+
+		File temporaryFile = new File(file.getPath() + ".tmp");
+		try {
+			RandomAccessFile output = new RandomAccessFile(temporaryFile, "rw");
+			try {
+				output.setLength(size);
+				MappedByteBuffer buffer = output.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+				buffer.putInt(MAGIC);
+				buffer.putInt(VERSION);
+				buffer.putInt(policyMap.size());
+				for (Map.Entry<String, double[][]> entry : policyMap.entrySet()) {
+					byte[] name = entry.getKey().getBytes(UTF8);
+					buffer.putInt(name.length);
+					buffer.put(name);
+					for (double[] values : entry.getValue()) {
+						if (values != null) {
+							buffer.putInt(values.length);
+							buffer.asDoubleBuffer().put(values);
+							buffer.position(buffer.position() + values.length * 8);
+						} else {
+							buffer.putInt(-1);
+						}
+					}
+				}
+				buffer.force();
+			} finally {
+				output.close();
+			}
+			if (!temporaryFile.renameTo(file) && !(file.delete() && temporaryFile.renameTo(file))) {
+				throw new IllegalStateException("Unable to replace " + file + " by " + temporaryFile);
+			}
+		} catch (Exception e) { // poor error handling
+			System.err.println("Unable to write the policy store: " + file);
+			e.printStackTrace();
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,159 @@
+package power.tools;
+
+import java.util.Arrays;
+
+/**
+ * The Q-values of many learners kept in one contiguous array. Every learner
+ * (e.g. a power plant) is given a block of hours x states x actions values
+ * when it is added, laid out hour by hour and state by state, so that a
+ * value is found by stride arithmetic and the row of a state is contiguous.
+ * 
+ * A learner keeps one table per hour of the period, and may have more than
+ * one state (e.g. a state discretised by the demand level).
+ */
+public class QTable {
+	private double[] values = new double[64];
+	private int size = 0;
+
+	// the layout and the learning rates of every learner
+	private int[] offset = new int[8];
+	private int[] states = new int[8];
+	private int[] actions = new int[8];
+	private int[] hours = new int[8];
+	private double[] alpha = new double[8];
+	private double[] gamma = new double[8];
+	private int learnerCount = 0;
+
+	/**
+	 * @return the index of the new learner, with every Q-value at zero
+	 */
+	public int addLearner(int hours, int states, int actions, double alpha, double gamma) {
+		if (learnerCount == offset.length) {
+			int length = 2 * offset.length;
+			offset = Arrays.copyOf(offset, length);
+			this.states = Arrays.copyOf(this.states, length);
+			this.actions = Arrays.copyOf(this.actions, length);
+			this.hours = Arrays.copyOf(this.hours, length);
+			this.alpha = Arrays.copyOf(this.alpha, length);
+			this.gamma = Arrays.copyOf(this.gamma, length);
+		}
+		int blockSize = hours * states * actions;
+		if (size + blockSize > values.length) {
+			values = Arrays.copyOf(values, Math.max(2 * values.length, size + blockSize));
+		}
+
+		offset[learnerCount] = size;
+		this.states[learnerCount] = states;
+		this.actions[learnerCount] = actions;
+		this.hours[learnerCount] = hours;
+		this.alpha[learnerCount] = alpha;
+		this.gamma[learnerCount] = gamma;
+		size += blockSize;
+		return learnerCount++;
+	}
+
+	public int getLearnerCount() {
+		return learnerCount;
+	}
+
+	public int getStateCount(int learner) {
+		return states[learner];
+	}
+
+	public int getActionCount(int learner) {
+		return actions[learner];
+	}
+
+	/**
+	 * @return the number of Q-values of the learner
+	 */
+	public int getBlockSize(int learner) {
+		return hours[learner] * states[learner] * actions[learner];
+	}
+
+	/**
+	 * Copies every Q-value of the learner into target, hour by hour and state
+	 * by state.
+	 */
+	public void copyBlock(int learner, double[] target) {
+		System.arraycopy(values, offset[learner], target, 0, getBlockSize(learner));
+	}
+
+	public void restoreBlock(int learner, double[] source) {
+		System.arraycopy(source, 0, values, offset[learner], getBlockSize(learner));
+	}
+
+	/**
+	 * @return the index of the first action of the state in the values
+	 */
+	private int getRow(int learner, int hour, int state) {
+		return offset[learner] + (hour * states[learner] + state) * actions[learner];
+	}
+
+	public double getQValue(int learner, int hour, int state, int action) {
+		return values[getRow(learner, hour, state) + action];
+	}
+
+	public double getMaxQValue(int learner, int hour, int state) {
+		int row = getRow(learner, hour, state);
+		double max = values[row];
+		for (int index = row + 1; index < row + actions[learner]; index++) {
+			if (values[index] > max) {
+				max = values[index];
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Updates the Q-value of the action taken in the previous state by the
+	 * reward it brought and the best Q-value of the current state.
+	 */
+	public void learn(int learner, int hour, int previousState, int previousAction, int currentState, double reward) {
+		int index = getRow(learner, hour, previousState) + previousAction;
+		values[index] = (1 - alpha[learner]) * values[index] + gamma[learner] * reward * getMaxQValue(learner, hour, currentState);
+	}
+
+	/**
+	 * Learns the same hour for every learner at once; the arrays are indexed
+	 * by learner.
+	 */
+	public void learnAll(int hour, int[] previousState, int[] previousAction, int[] currentState, double[] reward) {
+		for (int learner = 0; learner < learnerCount; learner++) {
+			learn(learner, hour, previousState[learner], previousAction[learner], currentState[learner], reward[learner]);
+		}
+	}
+
+	/**
+	 * @return the action with the highest Q-value in the state, the first one
+	 *         on a tie
+	 */
+	public int getBestAction(int learner, int hour, int state) {
+		int row = getRow(learner, hour, state);
+		int best = 0;
+		for (int action = 1; action < actions[learner]; action++) {
+			if (values[row + action] > values[row + best]) {
+				best = action;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Selects the best action of the same hour for every learner at once; the
+	 * arrays are indexed by learner.
+	 */
+	public void getBestActions(int hour, int[] state, int[] result) {
+		for (int learner = 0; learner < learnerCount; learner++) {
+			result[learner] = getBestAction(learner, hour, state[learner]);
+		}
+	}
+
+	/**
+	 * Copies the Q-values of a state into target, e.g. to turn them into the
+	 * probabilities of the actions.
+	 */
+	public void copyQValues(int learner, int hour, int state, double[] target) {
+		System.arraycopy(values, getRow(learner, hour, state), target, 0, actions[learner]);
+	}
+}
@@ -54,5 +54,23 @@ public class StupidLearning {
 		
 		return (int) Math.round(RandomHelper.createEmpirical(probabilityList, Empirical.NO_INTERPOLATION).nextDouble() * stupidTable.length);
 	}
+
+	/**
+	 * @return the number of values the state of the learner is saved in: the
+	 *         propensity of every action and the offset
+	 */
+	public int getStateSize() {
+		return stupidTable.length + 1;
+	}
+
+	public void copyState(double[] target, int index) {
+		System.arraycopy(stupidTable, 0, target, index, stupidTable.length);
+		target[index + stupidTable.length] = offset;
+	}
+
+	public void restoreState(double[] source, int index) {
+		System.arraycopy(source, index, stupidTable, 0, stupidTable.length);
+		offset = source[index + stupidTable.length];
+	}
 	
 }